@@ -0,0 +1,77 @@
+package org.example.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.example.AuthenticationServiceImpl;
+import org.example.FinancialOperationServiceImpl;
+import org.example.InMemoryDataService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Горячие пути FinancialOperationServiceImpl на кошельках разного размера
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class FinancialOperationBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int transactions;
+
+    private AuthenticationServiceImpl authService;
+    private FinancialOperationServiceImpl financialService;
+    private String token;
+    private final BigDecimal expense = new BigDecimal("0.01");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryDataService dataService = new InMemoryDataService();
+        authService = new AuthenticationServiceImpl(dataService);
+        financialService = new FinancialOperationServiceImpl(
+            authService,
+            dataService
+        );
+        authService.register("bench", "bench");
+        SyntheticData.fillWallet(
+            dataService.getUser("bench").getWallet(),
+            transactions,
+            42
+        );
+        token = authService.openSession("bench", "bench");
+    }
+
+    // Сессия привязывается к потоку, в котором JMH выполняет измерения
+    @Setup(Level.Iteration)
+    public void bindSession() {
+        authService.bindSession(token);
+    }
+
+    // Включает проверку баланса и checkBudgetLimit
+    @Benchmark
+    public void addExpense() {
+        financialService.addExpense(expense, SyntheticData.category(0));
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> getExpensesByCategory() {
+        return financialService.getExpensesByCategory();
+    }
+
+    @Benchmark
+    public BigDecimal getTotalIncome() {
+        return financialService.getTotalIncome();
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.benchmarks;
+
+import com.google.gson.Gson;
+import java.util.concurrent.TimeUnit;
+import org.example.JsonAdapters;
+import org.example.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Сериализация и десериализация кошелька адаптерами Gson
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JsonAdaptersBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int transactions;
+
+    private Gson gson;
+    private Wallet wallet;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gson = JsonAdapters.createGson();
+        wallet = new Wallet();
+        SyntheticData.fillWallet(wallet, transactions, 42);
+        json = gson.toJson(wallet);
+    }
+
+    @Benchmark
+    public String serializeWallet() {
+        return gson.toJson(wallet);
+    }
+
+    @Benchmark
+    public Wallet deserializeWallet() {
+        return gson.fromJson(json, Wallet.class);
+    }
+}
@@ -0,0 +1,437 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.example.AuthenticationService;
+import org.example.AuthenticationServiceImpl;
+import org.example.DataService;
+import org.example.FileDataService;
+import org.example.FinancialOperationService;
+import org.example.FinancialOperationServiceImpl;
+import org.example.InstrumentedAuthenticationService;
+import org.example.InstrumentedDataService;
+import org.example.InstrumentedFinancialOperationService;
+import org.example.LatencyHistogram;
+import org.example.MetricsRegistry;
+import org.example.PasswordHasher;
+import org.example.PasswordVerifier;
+
+// Нагрузка от множества пользователей на сервисы в одном процессе, с хранением
+// FileDataService во временном каталоге.
+// Каждый пользователь регистрируется, входит и выполняет operations операций по смеси
+// весов (доход, расход, бюджет, статистика, повторный вход); пользователи выполняются
+// на пуле из threads потоков. Случайные решения пользователя i берутся из Random(seed + i),
+// поэтому при тех же параметрах нагрузка повторяется.
+// В конце выводятся пропускная способность и p50/p99/p999 по операциям, затем стоимость
+// хранения: запись журнала, загрузка и полный снимок накопленных данных.
+//
+// java -cp benchmarks/target/benchmarks.jar org.example.benchmarks.LoadGenerator \
+//     --users=2000 --threads=64 --operations=200 --categories=20 \
+//     --mix=income:30,expense:45,setBudget:5,statistics:15,login:5
+public class LoadGenerator {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("users", "1000");
+        DEFAULTS.put("threads", "64");
+        // Операций на пользователя после регистрации и входа
+        DEFAULTS.put("operations", "100");
+        DEFAULTS.put("categories", "20");
+        DEFAULTS.put(
+            "mix",
+            "income:30,expense:45,setBudget:5,statistics:15,login:5"
+        );
+        // Стоимость PBKDF2; по умолчанию как в рабочем режиме
+        DEFAULTS.put(
+            "hashIterations",
+            String.valueOf(PasswordHasher.DEFAULT_ITERATIONS)
+        );
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("keep", "false");
+    }
+
+    private enum Operation {
+        INCOME("income"),
+        EXPENSE("expense"),
+        SET_BUDGET("setBudget"),
+        STATISTICS("statistics"),
+        LOGIN("login");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        private static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: " + key);
+        }
+    }
+
+    // Метрики, выводимые в отчете: задержка операций сервисов и стоимость хранения
+    private static final String[] SERVICE_TIMERS = {
+        "auth.register",
+        "auth.openSession",
+        "finance.addIncome",
+        "finance.addExpense",
+        "finance.setBudget",
+        "finance.getIncomesByCategory",
+        "finance.getExpensesByCategory",
+        "finance.getBudgetsByCategory",
+    };
+    private static final String[] PERSISTENCE_TIMERS = {
+        "data.journal.write",
+        "data.loadData",
+        "data.snapshot.read.io",
+        "data.snapshot.read.gson",
+        "data.saveData",
+        "data.snapshot.write.io",
+        "data.snapshot.write.gson",
+    };
+    private static final String[] PERSISTENCE_COUNTERS = {
+        "data.journal.records",
+        "data.snapshot.read.bytes",
+        "data.snapshot.write.bytes",
+        "data.snapshot.write.users",
+        "data.snapshot.write.transactions",
+    };
+
+    private final int users;
+    private final int threads;
+    private final int operations;
+    private final int categories;
+    private final Operation[] weightedOperations;
+    private final int hashIterations;
+    private final long seed;
+    private final boolean keep;
+    private final MetricsRegistry metrics;
+    // Отказы сервисов (нехватка средств и т.п.); в задержки они тоже входят
+    private final LongAdder rejected;
+
+    public LoadGenerator(Map<String, String> options) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String key : options.keySet()) {
+            if (!DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+        values.putAll(options);
+        this.users = Integer.parseInt(values.get("users"));
+        this.threads = Integer.parseInt(values.get("threads"));
+        this.operations = Integer.parseInt(values.get("operations"));
+        this.categories = Integer.parseInt(values.get("categories"));
+        this.weightedOperations = parseMix(values.get("mix"));
+        this.hashIterations = Integer.parseInt(values.get("hashIterations"));
+        this.seed = Long.parseLong(values.get("seed"));
+        this.keep = Boolean.parseBoolean(values.get("keep"));
+        this.metrics = MetricsRegistry.getDefault();
+        this.rejected = new LongAdder();
+    }
+
+    // "income:30,expense:45" -> таблица из 75 элементов для выбора по случайному индексу
+    private static Operation[] parseMix(String mix) {
+        List<Operation> table = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed mix: " + entry);
+            }
+            Operation operation = Operation.of(parts[0].trim());
+            int weight = Integer.parseInt(parts[1].trim());
+            for (int i = 0; i < weight; i++) {
+                table.add(operation);
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("Operation mix is empty");
+        }
+        return table.toArray(new Operation[0]);
+    }
+
+    public void run() throws Exception {
+        Path directory = Files.createTempDirectory("simple-finance-load");
+        PasswordVerifier verifier = new PasswordVerifier(
+            new PasswordHasher(
+                hashIterations,
+                PasswordHasher.DEFAULT_SALT_BYTES,
+                PasswordHasher.DEFAULT_KEY_BITS
+            ),
+            Runtime.getRuntime().availableProcessors(),
+            // Вход не должен отклоняться из-за очереди: в ней все потоки нагрузки
+            Math.max(PasswordVerifier.DEFAULT_QUEUE_CAPACITY, threads),
+            PasswordVerifier.DEFAULT_CACHE_SIZE
+        );
+        DataService dataService = new InstrumentedDataService(
+            new FileDataService(directory.resolve("users.json")),
+            metrics
+        );
+        AuthenticationService authService =
+            new InstrumentedAuthenticationService(
+                new AuthenticationServiceImpl(dataService, verifier),
+                metrics
+            );
+        FinancialOperationService financialService =
+            new InstrumentedFinancialOperationService(
+                new FinancialOperationServiceImpl(authService, dataService),
+                metrics
+            );
+        // Первый пустой снимок при создании хранилища в отчет не входит
+        metrics.reset();
+        try {
+            long elapsed = runUsers(authService, financialService);
+            printServiceReport(elapsed);
+            measurePersistence(dataService);
+            printPersistenceReport(directory);
+        } finally {
+            dataService.close();
+            verifier.close();
+            if (keep) {
+                System.out.println("Data kept in " + directory);
+            } else {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    // Время выполнения всех пользователей в наносекундах
+    private long runUsers(
+        AuthenticationService authService,
+        FinancialOperationService financialService
+    ) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                int index = i;
+                futures.add(
+                    executor.submit(() ->
+                        simulateUser(authService, financialService, index)
+                    )
+                );
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void simulateUser(
+        AuthenticationService authService,
+        FinancialOperationService financialService,
+        int index
+    ) {
+        Random random = new Random(seed + index);
+        String username = "load-user-" + index;
+        String password = "password-" + index;
+        authService.register(username, password);
+        String token = authService.openSession(username, password);
+        authService.bindSession(token);
+        try {
+            // Стартовый доход, чтобы первые расходы не отклонялись
+            financialService.addIncome(amount(random, 100_000), category(random));
+            for (int i = 0; i < operations; i++) {
+                Operation operation = weightedOperations[random.nextInt(
+                        weightedOperations.length
+                    )];
+                try {
+                    if (operation == Operation.LOGIN) {
+                        authService.closeSession(token);
+                        token = authService.openSession(username, password);
+                        authService.bindSession(token);
+                    } else {
+                        perform(operation, financialService, random);
+                    }
+                } catch (RuntimeException e) {
+                    rejected.increment();
+                }
+            }
+        } finally {
+            authService.unbindSession();
+            authService.closeSession(token);
+        }
+    }
+
+    private void perform(
+        Operation operation,
+        FinancialOperationService financialService,
+        Random random
+    ) {
+        switch (operation) {
+            case INCOME -> financialService.addIncome(
+                amount(random, 5_000),
+                category(random)
+            );
+            case EXPENSE -> financialService.addExpense(
+                amount(random, 1_000),
+                category(random)
+            );
+            case SET_BUDGET -> financialService.setBudget(
+                category(random),
+                amount(random, 20_000)
+            );
+            case STATISTICS -> {
+                financialService.getIncomesByCategory();
+                financialService.getExpensesByCategory();
+                financialService.getBudgetsByCategory();
+            }
+            case LOGIN -> throw new IllegalArgumentException(
+                "Login is performed by simulateUser"
+            );
+        }
+    }
+
+    // Сумма от 0.01 до max с копейками
+    private static BigDecimal amount(Random random, int max) {
+        return BigDecimal.valueOf(1 + random.nextInt(max * 100), 2);
+    }
+
+    private String category(Random random) {
+        return "category-" + random.nextInt(categories);
+    }
+
+    // Перезапуск хранилища: загрузка снимка с журналом и полный снимок всех данных
+    private void measurePersistence(DataService dataService) {
+        dataService.flush();
+        dataService.saveData(dataService.loadData());
+    }
+
+    private void printServiceReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.printf(
+            "Users: %d, threads: %d, operations per user: %d, categories: %d%n",
+            users,
+            threads,
+            operations,
+            categories
+        );
+        System.out.printf("Elapsed: %.2f s%n%n", seconds);
+        System.out.printf(
+            "%-34s %9s %10s %10s %10s %10s %10s%n",
+            "operation",
+            "count",
+            "ops/s",
+            "p50 ms",
+            "p99 ms",
+            "p999 ms",
+            "max ms"
+        );
+        for (String name : SERVICE_TIMERS) {
+            LatencyHistogram timer = metrics.timer(name);
+            total += timer.getCount();
+            printTimer(name, timer, seconds);
+        }
+        System.out.printf(
+            "%nTotal: %d calls, %.0f calls/s, rejected: %d%n",
+            total,
+            total / seconds,
+            rejected.sum()
+        );
+    }
+
+    private void printPersistenceReport(Path directory) throws IOException {
+        System.out.printf(
+            "%n%-34s %9s %10s %10s %10s %10s %10s%n",
+            "persistence",
+            "count",
+            "",
+            "p50 ms",
+            "p99 ms",
+            "p999 ms",
+            "max ms"
+        );
+        for (String name : PERSISTENCE_TIMERS) {
+            printTimer(name, metrics.timer(name), 0);
+        }
+        System.out.println();
+        for (String name : PERSISTENCE_COUNTERS) {
+            System.out.printf("%-34s %d%n", name, metrics.counter(name).sum());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files
+                .sorted()
+                .forEach(file -> {
+                    try {
+                        System.out.printf(
+                            "%-34s %d bytes%n",
+                            file.getFileName(),
+                            Files.size(file)
+                        );
+                    } catch (IOException e) {
+                        System.err.println(
+                            "Error reading file size: " + e.getMessage()
+                        );
+                    }
+                });
+        }
+    }
+
+    // seconds = 0 - без пропускной способности
+    private static void printTimer(
+        String name,
+        LatencyHistogram timer,
+        double seconds
+    ) {
+        System.out.printf(
+            "%-34s %9d %10s %10.3f %10.3f %10.3f %10.3f%n",
+            name,
+            timer.getCount(),
+            seconds > 0 ? String.format("%.0f", timer.getCount() / seconds) : "",
+            timer.getPercentile(0.5) / 1e6,
+            timer.getPercentile(0.99) / 1e6,
+            timer.getPercentile(0.999) / 1e6,
+            timer.getMax() / 1e6
+        );
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files
+                .sorted(Comparator.reverseOrder())
+                .forEach(file -> file.toFile().delete());
+        }
+    }
+
+    // Аргументы вида --имя=значение
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException(
+                    "Expected --name=value, got " + arg
+                );
+            }
+            options.put(
+                arg.substring(2, separator),
+                arg.substring(separator + 1)
+            );
+        }
+        new LoadGenerator(options).run();
+    }
+}
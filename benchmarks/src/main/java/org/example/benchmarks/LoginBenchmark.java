@@ -0,0 +1,96 @@
+package org.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.example.AuthenticationServiceImpl;
+import org.example.InMemoryDataService;
+import org.example.PasswordHasher;
+import org.example.PasswordVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Входов в секунду под нагрузкой из нескольких потоков: PBKDF2 с разной стоимостью,
+// с кэшем подтвержденных паролей и без него
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+public class LoginBenchmark {
+
+    private static final int USERS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        @Param({ "10000", "310000" })
+        public int iterations;
+
+        @Param({ "0", "10000" })
+        public int cacheSize;
+
+        private PasswordVerifier verifier;
+        private AuthenticationServiceImpl authService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            verifier = new PasswordVerifier(
+                new PasswordHasher(
+                    iterations,
+                    PasswordHasher.DEFAULT_SALT_BYTES,
+                    PasswordHasher.DEFAULT_KEY_BITS
+                ),
+                Runtime.getRuntime().availableProcessors(),
+                PasswordVerifier.DEFAULT_QUEUE_CAPACITY,
+                cacheSize
+            );
+            authService = new AuthenticationServiceImpl(
+                new InMemoryDataService(),
+                verifier
+            );
+            for (int i = 0; i < USERS; i++) {
+                authService.register("user" + i, "password" + i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            verifier.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            next = (int) (Thread.currentThread().getId() % USERS);
+        }
+    }
+
+    @Benchmark
+    public String login(Service service, Client client) {
+        int user = client.next;
+        client.next = (user + 1) % USERS;
+        String token = service.authService.openSession(
+            "user" + user,
+            "password" + user
+        );
+        service.authService.closeSession(token);
+        return token;
+    }
+}
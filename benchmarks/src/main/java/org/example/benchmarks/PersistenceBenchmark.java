@@ -0,0 +1,127 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.example.BinaryDataService;
+import org.example.FileDataService;
+import org.example.ShardedFileDataService;
+import org.example.Transaction;
+import org.example.TransactionType;
+import org.example.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Полное сохранение и загрузка данных на разном числе пользователей
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    private static final int TRANSACTIONS_PER_USER = 10;
+
+    @Param({ "10", "10000", "100000" })
+    public int users;
+
+    private Path directory;
+    private Map<String, User> data;
+    private FileDataService fileDataService;
+    private BinaryDataService binaryDataService;
+    private ShardedFileDataService shardedDataService;
+    private User changedUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("simple-finance-bench");
+        data = SyntheticData.users(users, TRANSACTIONS_PER_USER);
+        fileDataService = new FileDataService(directory.resolve("users.json"));
+        fileDataService.saveData(data);
+        binaryDataService = new BinaryDataService(
+            directory.resolve("users.bin")
+        );
+        binaryDataService.saveData(data);
+        shardedDataService = new ShardedFileDataService(
+            directory.resolve("sharded")
+        );
+        data.values().forEach(shardedDataService::addUser);
+        shardedDataService.flush();
+        shardedDataService.compact();
+        changedUser = data.values().iterator().next();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        shardedDataService.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files
+                .sorted(Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void fileSaveData() {
+        fileDataService.saveData(data);
+    }
+
+    @Benchmark
+    public Map<String, User> fileLoadData() {
+        return fileDataService.loadData();
+    }
+
+    @Benchmark
+    public void binarySaveData() {
+        binaryDataService.saveData(data);
+    }
+
+    // Загрузка с декодированием всех кошельков, чтобы сравнение с JSON было честным
+    @Benchmark
+    public int binaryLoadData() {
+        int transactions = 0;
+        for (User user : binaryDataService.loadData().values()) {
+            transactions += user.getWallet().getTransactionCount();
+        }
+        return transactions;
+    }
+
+    @Benchmark
+    public Map<String, User> shardedLoadData() {
+        return shardedDataService.loadData();
+    }
+
+    // Изменился один пользователь: переписывается только его сегмент
+    @Benchmark
+    public void shardedSaveOneChanged() {
+        Transaction transaction = new Transaction(
+            BigDecimal.ONE,
+            "benchmark",
+            TransactionType.INCOME
+        );
+        changedUser.getWallet().addTransaction(transaction);
+        shardedDataService.appendTransaction(
+            changedUser.getUsername(),
+            transaction
+        );
+        shardedDataService.flush();
+        shardedDataService.saveData(data);
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.example.Transaction;
+import org.example.TransactionType;
+import org.example.User;
+import org.example.Wallet;
+
+// Генерация синтетических кошельков и пользователей с фиксированным seed для воспроизводимости
+final class SyntheticData {
+
+    static final int CATEGORY_COUNT = 20;
+    static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private SyntheticData() {}
+
+    static String category(int index) {
+        return "Category" + (index % CATEGORY_COUNT);
+    }
+
+    // Кошелек с заданным числом транзакций: каждая пятая - доход, остальные - расходы
+    static void fillWallet(Wallet wallet, int transactions, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < transactions; i++) {
+            TransactionType type = i % 5 == 0
+                ? TransactionType.INCOME
+                : TransactionType.EXPENSE;
+            BigDecimal amount = BigDecimal.valueOf(
+                type == TransactionType.INCOME
+                    ? 100_000 + random.nextInt(100_000)
+                    : 100 + random.nextInt(10_000),
+                2
+            );
+            wallet.addTransaction(
+                new Transaction(
+                    amount,
+                    category(random.nextInt(CATEGORY_COUNT)),
+                    type,
+                    START.plusMinutes(i)
+                )
+            );
+        }
+        for (int i = 0; i < CATEGORY_COUNT; i++) {
+            wallet.setBudget(category(i), BigDecimal.valueOf(1_000_000_000L));
+        }
+    }
+
+    static Map<String, User> users(int count, int transactionsPerUser) {
+        Map<String, User> users = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User("user" + i, "password" + i);
+            fillWallet(user.getWallet(), transactionsPerUser, i);
+            users.put(user.getUsername(), user);
+        }
+        return users;
+    }
+}
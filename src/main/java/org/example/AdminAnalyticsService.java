@@ -0,0 +1,35 @@
+package org.example;
+
+import java.util.Collection;
+
+// Сводные отчеты оператора по всем пользователям хранилища.
+// Пользователи сканируются параллельным потоком: у каждого потока своя часть отчета,
+// части объединяются в конце. Каждый кошелек читается из накопительных итогов под его
+// read lock, поэтому сканирование не останавливает обычные сессии, а стоимость
+// не зависит от числа транзакций
+public class AdminAnalyticsService {
+
+    public static final int DEFAULT_TOP_SPENDERS = 10;
+
+    private final DataService dataService;
+
+    public AdminAnalyticsService(DataService dataService) {
+        this.dataService = dataService;
+    }
+
+    public AdminReport buildReport() {
+        return buildReport(DEFAULT_TOP_SPENDERS);
+    }
+
+    // topSpenders - сколько пользователей с наибольшими расходами включить в отчет
+    public AdminReport buildReport(int topSpenders) {
+        Collection<User> users = dataService.getAllUsers();
+        return users
+            .parallelStream()
+            .collect(
+                () -> new AdminReport(topSpenders),
+                AdminReport::add,
+                AdminReport::merge
+            );
+    }
+}
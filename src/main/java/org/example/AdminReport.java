@@ -0,0 +1,221 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Сводный отчет по всем пользователям: итоги по категориям, пользователи с наибольшими
+// расходами и превышения бюджетов. Накапливается по частям (у каждого потока сканирования
+// своя часть), части объединяются в конце; суммы хранятся в копейках
+public class AdminReport {
+
+    // Больше этого числа превышений подробно не сохраняется, остальные лишь считаются
+    static final int MAX_REPORTED_OVERRUNS = 10_000;
+
+    private static final Comparator<Spender> BY_EXPENSES = Comparator
+        .comparingLong((Spender spender) -> spender.totalExpenses)
+        .thenComparing(spender -> spender.username, Comparator.reverseOrder());
+
+    private final int topLimit;
+    private long userCount;
+    private long totalIncome;
+    private long totalExpenses;
+    private final CategoryTotals incomesByCategory;
+    private final CategoryTotals expensesByCategory;
+    // Куча с наименьшим из отобранных расходов в вершине
+    private final PriorityQueue<Spender> topSpenders;
+    private long overrunCount;
+    private final List<BudgetOverrun> overruns;
+
+    // Пользователь и сумма его расходов
+    public static class Spender {
+
+        private final String username;
+        private final long totalExpenses;
+
+        Spender(String username, long totalExpenses) {
+            this.username = username;
+            this.totalExpenses = totalExpenses;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public BigDecimal getTotalExpenses() {
+            return Money.toBigDecimal(totalExpenses);
+        }
+
+        @Override
+        public String toString() {
+            return username + ": " + getTotalExpenses();
+        }
+    }
+
+    // Категория, расходы в которой превысили установленный бюджет
+    public static class BudgetOverrun {
+
+        private final String username;
+        private final String category;
+        private final long budget;
+        private final long spent;
+
+        BudgetOverrun(String username, String category, long budget, long spent) {
+            this.username = username;
+            this.category = category;
+            this.budget = budget;
+            this.spent = spent;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public BigDecimal getBudget() {
+            return Money.toBigDecimal(budget);
+        }
+
+        public BigDecimal getSpent() {
+            return Money.toBigDecimal(spent);
+        }
+
+        @Override
+        public String toString() {
+            return (
+                username + " / " + category + ": " + getSpent() + " of " +
+                getBudget()
+            );
+        }
+    }
+
+    AdminReport(int topLimit) {
+        this.topLimit = topLimit;
+        this.userCount = 0;
+        this.totalIncome = 0;
+        this.totalExpenses = 0;
+        this.incomesByCategory = new CategoryTotals();
+        this.expensesByCategory = new CategoryTotals();
+        this.topSpenders = new PriorityQueue<>(BY_EXPENSES);
+        this.overrunCount = 0;
+        this.overruns = new ArrayList<>();
+    }
+
+    // Учет одного пользователя; кошелек читается под его read lock и сразу отпускается,
+    // поэтому сессии этого пользователя ждут не дольше чтения его итогов
+    void add(User user) {
+        Wallet wallet = user.getWallet();
+        wallet.ensureLoaded();
+        wallet.getLock().readLock().lock();
+        try {
+            userCount++;
+            totalIncome = Math.addExact(
+                totalIncome,
+                wallet.getTotalIncomeMoney().getMinorUnits()
+            );
+            long expenses = wallet.getTotalExpensesMoney().getMinorUnits();
+            totalExpenses = Math.addExact(totalExpenses, expenses);
+            wallet.addTotalsTo(incomesByCategory, expensesByCategory);
+            offerSpender(new Spender(user.getUsername(), expenses));
+            for (String category : wallet.getBudgets().keySet()) {
+                long budget = wallet.getBudgetMoney(category).getMinorUnits();
+                long spent = wallet
+                    .getExpensesInCategoryMoney(category)
+                    .getMinorUnits();
+                if (budget > 0 && spent > budget) {
+                    addOverrun(
+                        new BudgetOverrun(
+                            user.getUsername(),
+                            category,
+                            budget,
+                            spent
+                        )
+                    );
+                }
+            }
+        } finally {
+            wallet.getLock().readLock().unlock();
+        }
+    }
+
+    // Объединение с частью, собранной другим потоком
+    void merge(AdminReport other) {
+        userCount += other.userCount;
+        totalIncome = Math.addExact(totalIncome, other.totalIncome);
+        totalExpenses = Math.addExact(totalExpenses, other.totalExpenses);
+        incomesByCategory.addAll(other.incomesByCategory);
+        expensesByCategory.addAll(other.expensesByCategory);
+        for (Spender spender : other.topSpenders) {
+            offerSpender(spender);
+        }
+        overrunCount += other.overrunCount - other.overruns.size();
+        for (BudgetOverrun overrun : other.overruns) {
+            addOverrun(overrun);
+        }
+    }
+
+    private void offerSpender(Spender spender) {
+        if (topLimit <= 0) {
+            return;
+        }
+        if (topSpenders.size() < topLimit) {
+            topSpenders.add(spender);
+        } else if (BY_EXPENSES.compare(spender, topSpenders.peek()) > 0) {
+            topSpenders.poll();
+            topSpenders.add(spender);
+        }
+    }
+
+    private void addOverrun(BudgetOverrun overrun) {
+        overrunCount++;
+        if (overruns.size() < MAX_REPORTED_OVERRUNS) {
+            overruns.add(overrun);
+        }
+    }
+
+    public long getUserCount() {
+        return userCount;
+    }
+
+    public BigDecimal getTotalIncome() {
+        return Money.toBigDecimal(totalIncome);
+    }
+
+    public BigDecimal getTotalExpenses() {
+        return Money.toBigDecimal(totalExpenses);
+    }
+
+    public Map<String, BigDecimal> getIncomesByCategory() {
+        return Collections.unmodifiableMap(
+            incomesByCategory.toBigDecimalMap()
+        );
+    }
+
+    public Map<String, BigDecimal> getExpensesByCategory() {
+        return Collections.unmodifiableMap(
+            expensesByCategory.toBigDecimalMap()
+        );
+    }
+
+    // По убыванию расходов
+    public List<Spender> getTopSpenders() {
+        List<Spender> result = new ArrayList<>(topSpenders);
+        result.sort(BY_EXPENSES.reversed());
+        return Collections.unmodifiableList(result);
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public List<BudgetOverrun> getBudgetOverruns() {
+        return Collections.unmodifiableList(overruns);
+    }
+}
@@ -6,4 +6,11 @@ public interface AuthenticationService {
     void logout();
     User getCurrentUser();
     boolean isAuthenticated();
-}
\ No newline at end of file
+
+    // Сессии: несколько пользователей одновременно, каждый со своим токеном
+    String openSession(String username, String password);
+    void closeSession(String token);
+    // Привязка сессии к текущему потоку; getCurrentUser() возвращает ее пользователя
+    void bindSession(String token);
+    void unbindSession();
+}
@@ -1,17 +1,91 @@
 package org.example;
 
-// Реализация сервиса аутентификации, управляет регистрацией, входом и выходом пользователей
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Реализация сервиса аутентификации, управляет регистрацией, входом и выходом пользователей.
+// Вместо одного текущего пользователя хранит сессии (токен -> пользователь);
+// текущей считается сессия, привязанная к вызывающему потоку.
+// Пароли хранятся соленым хешем (см. PasswordVerifier); пароль в открытом виде из старых
+// данных заменяется хешем при первом успешном входе.
+// Сессия истекает, если ею не пользовались дольше idleTimeout; истекшие сессии удаляются
+// при обращении к ним и при открытии новых. Число сессий ограничено maxSessions:
+// при переполнении закрывается сессия, которой дольше всех не пользовались
 public class AuthenticationServiceImpl implements AuthenticationService {
 
+    private static final int TOKEN_BYTES = 32;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    private static final int DEFAULT_MAX_SESSIONS = 10_000;
+
     // сервис для работы с данными пользователей
     private final DataService dataService;
 
-    // Текущий авторизованный пользователь
-    private User currentUser;
+    private final PasswordVerifier passwordVerifier;
+
+    // Открытые сессии
+    private final Map<String, Session> sessions;
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+    // Время последней очистки истекших сессий
+    private volatile long lastSweep;
+
+    // Токен сессии, привязанной к текущему потоку
+    private final ThreadLocal<String> currentToken;
+
+    private final SecureRandom random;
 
     public AuthenticationServiceImpl(DataService dataService) {
+        this(dataService, new PasswordVerifier());
+    }
+
+    public AuthenticationServiceImpl(
+        DataService dataService,
+        PasswordVerifier passwordVerifier
+    ) {
+        this(
+            dataService,
+            passwordVerifier,
+            DEFAULT_IDLE_TIMEOUT,
+            DEFAULT_MAX_SESSIONS
+        );
+    }
+
+    public AuthenticationServiceImpl(
+        DataService dataService,
+        PasswordVerifier passwordVerifier,
+        Duration idleTimeout,
+        int maxSessions
+    ) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("maxSessions must be positive");
+        }
         this.dataService = dataService;
-        this.currentUser = null;
+        this.passwordVerifier = passwordVerifier;
+        this.sessions = new ConcurrentHashMap<>();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.maxSessions = maxSessions;
+        this.lastSweep = System.nanoTime();
+        this.currentToken = new ThreadLocal<>();
+        this.random = new SecureRandom();
+    }
+
+    // Пользователь сессии и время последнего обращения к ней
+    private static final class Session {
+
+        private final User user;
+        private volatile long lastAccess;
+
+        private Session(User user, long now) {
+            this.user = user;
+            this.lastAccess = now;
+        }
     }
 
     @Override
@@ -22,41 +96,157 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         if (password == null || password.trim().isEmpty()) {
             throw new AuthenticationException("Password cannot be empty");
         }
-        if (dataService.userExists(username)) {
-            throw new AuthenticationException("User already exists");
-        }
+        // Хеш считается вне блокировки, чтобы регистрации не ждали друг друга
+        String passwordHash = passwordVerifier.hash(password);
+        // Проверка и добавление атомарны, чтобы два потока не зарегистрировали одно имя
+        synchronized (this) {
+            if (dataService.userExists(username)) {
+                throw new AuthenticationException("User already exists");
+            }
 
-        User user = new User(username, password);
-        dataService.addUser(user);
+            User user = new User(username, passwordHash);
+            dataService.addUser(user);
+        }
     }
 
     @Override
     public boolean login(String username, String password) {
-        // Проверяем существование пользователя и правильность пароля
-        User user = dataService.getUser(username);
-        if (user == null || !user.getPassword().equals(password)) {
-            throw new AuthenticationException("Invalid username or password");
-        }
-        currentUser = user;
+        bindSession(openSession(username, password));
         return true;
     }
 
     @Override
     public void logout() {
-        currentUser = null;
+        String token = currentToken.get();
+        if (token != null) {
+            closeSession(token);
+        }
+        unbindSession();
     }
 
     @Override
     public User getCurrentUser() {
         // Проверяем, что пользователь авторизован
-        if (currentUser == null) {
+        User user = currentSessionUser();
+        if (user == null) {
             throw new AuthenticationException("No user is currently logged in");
         }
-        return currentUser;
+        return user;
     }
 
     @Override
     public boolean isAuthenticated() {
-        return currentUser != null;
+        return currentSessionUser() != null;
+    }
+
+    @Override
+    public String openSession(String username, String password) {
+        // Проверяем существование пользователя и правильность пароля
+        User user = dataService.getUser(username);
+        if (user == null) {
+            passwordVerifier.verifyUnknown(password);
+            throw new AuthenticationException("Invalid username or password");
+        }
+        String stored = user.getPassword();
+        if (!passwordVerifier.verify(password, stored)) {
+            throw new AuthenticationException("Invalid username or password");
+        }
+        if (passwordVerifier.needsRehash(stored)) {
+            rehash(user, stored, password);
+        }
+        String token = newToken();
+        long now = System.nanoTime();
+        sweep(now);
+        sessions.put(token, new Session(user, now));
+        return token;
+    }
+
+    @Override
+    public void closeSession(String token) {
+        sessions.remove(token);
+    }
+
+    @Override
+    public void bindSession(String token) {
+        if (token == null || activeSession(token) == null) {
+            throw new AuthenticationException("Invalid or expired session");
+        }
+        currentToken.set(token);
+    }
+
+    @Override
+    public void unbindSession() {
+        currentToken.remove();
+    }
+
+    // Замена открытого пароля или устаревшего хеша; параллельный вход того же
+    // пользователя не перезапишет уже обновленное значение
+    private void rehash(User user, String stored, String password) {
+        String passwordHash = passwordVerifier.hash(password);
+        synchronized (user) {
+            if (!stored.equals(user.getPassword())) {
+                return;
+            }
+            user.setPassword(passwordHash);
+        }
+        dataService.updatePassword(user.getUsername(), passwordHash);
+    }
+
+    private User currentSessionUser() {
+        String token = currentToken.get();
+        Session session = token != null ? activeSession(token) : null;
+        return session != null ? session.user : null;
+    }
+
+    // Сессия по токену с отметкой обращения; истекшая удаляется
+    private Session activeSession(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (isExpired(session, now)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastAccess = now;
+        return session;
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.lastAccess > idleTimeoutNanos;
+    }
+
+    // Удаление истекших сессий (не чаще раза за idleTimeout) и, если места все равно
+    // нет, сессий, которыми дольше всех не пользовались
+    private void sweep(long now) {
+        if (
+            now - lastSweep > idleTimeoutNanos ||
+            sessions.size() >= maxSessions
+        ) {
+            lastSweep = now;
+            sessions
+                .entrySet()
+                .removeIf(entry -> isExpired(entry.getValue(), now));
+        }
+        while (sessions.size() >= maxSessions) {
+            sessions
+                .entrySet()
+                .stream()
+                .min(
+                    Comparator.comparingLong(entry ->
+                        entry.getValue().lastAccess
+                    )
+                )
+                .ifPresent(entry ->
+                    sessions.remove(entry.getKey(), entry.getValue())
+                );
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 }
@@ -0,0 +1,366 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Реализация сервиса данных с хранением в компактном двоичном файле (см. BinaryUserCodec).
+// При старте читается только индекс username -> сегмент; пользователи декодируются по запросу,
+// транзакции кошелька - при первом обращении к нему. Горячие пользователи держатся в LRU-кэше.
+// Операции с файлом и индексом синхронизированы на сервисе; отметка об изменении кошелька
+// (вызывается под блокировкой кошелька) берет только короткую блокировку кэша.
+// Файл перезаписывается фоновым потоком PersistenceScheduler, сразу за группу изменений.
+public class BinaryDataService implements DataService {
+
+    private static final String FILE_PATH = "users.bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final int DEFAULT_FLUSH_THRESHOLD = 1000;
+    private static final Duration DEFAULT_DURABILITY_WINDOW =
+        Duration.ofMillis(500);
+
+    private final Path filePath;
+    // Открытый файл с индексом пользователей
+    private BinaryUserCodec.MappedStore store;
+    // Новые и измененные пользователи; не вытесняются до записи в файл
+    private final Map<String, User> dirtyUsers;
+    // Ограниченный по размеру кэш недавно использованных пользователей
+    private final Map<String, User> cache;
+    // Защищает cache и liveUsers
+    private final Object cacheLock;
+    // Выданные наружу объекты пользователей: пока на них есть ссылки, getUser вернет тот же объект
+    private final Map<String, UserReference> liveUsers;
+    private final ReferenceQueue<User> collectedUsers;
+    // Были ли удалены пользователи с момента последней записи файла
+    private boolean usersRemoved;
+    private final PersistenceScheduler scheduler;
+
+    private static class UserReference extends WeakReference<User> {
+
+        private final String username;
+
+        private UserReference(User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.username = user.getUsername();
+        }
+    }
+
+    public BinaryDataService() {
+        this(Paths.get(FILE_PATH));
+    }
+
+    public BinaryDataService(Path filePath) {
+        this(filePath, DEFAULT_CACHE_SIZE);
+    }
+
+    public BinaryDataService(Path filePath, int cacheSize) {
+        this(
+            filePath,
+            cacheSize,
+            DEFAULT_FLUSH_THRESHOLD,
+            DEFAULT_DURABILITY_WINDOW
+        );
+    }
+
+    // flushThreshold - после скольких изменений перезаписывать файл, не дожидаясь окна;
+    // durabilityWindow - максимальная задержка записи изменения (0 - сразу, синхронно)
+    public BinaryDataService(
+        Path filePath,
+        int cacheSize,
+        int flushThreshold,
+        Duration durabilityWindow
+    ) {
+        this.filePath = filePath;
+        this.dirtyUsers = new ConcurrentHashMap<>();
+        this.cacheLock = new Object();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.liveUsers = new HashMap<>();
+        this.collectedUsers = new ReferenceQueue<>();
+        this.usersRemoved = false;
+        try {
+            openStore();
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                "Cannot open binary storage " + filePath,
+                e
+            );
+        }
+        this.scheduler = new PersistenceScheduler(
+            this::writeDirty,
+            flushThreshold,
+            durabilityWindow
+        );
+    }
+
+    // Открытие файла; файлы старых версий (без индекса пользователей или времени)
+    // один раз конвертируются. Файл, который не удалось прочитать, не заменяется:
+    // без его индекса следующая перезапись сохранила бы только измененных
+    // пользователей, поэтому сервис не запускается
+    private void openStore() throws IOException {
+        if (!Files.exists(filePath) || Files.size(filePath) == 0) {
+            writeFile(new HashMap<>());
+        } else if (
+            BinaryUserCodec.version(filePath) != BinaryUserCodec.VERSION
+        ) {
+            writeFile(BinaryUserCodec.read(filePath));
+        }
+        store = BinaryUserCodec.open(filePath);
+    }
+
+    // Запись во временный файл и атомарная замена основного (см. SnapshotFiles.replace):
+    // старое отображение остается читаемым, после сбоя на диске старый или новый файл целиком
+    private void writeFile(Map<String, User> users) throws IOException {
+        Path tempPath = Paths.get(filePath + TEMP_SUFFIX);
+        BinaryUserCodec.write(users, tempPath);
+        SnapshotFiles.replace(tempPath, filePath);
+    }
+
+    // Сохранение данных в файл; состояние сервиса заменяется переданными пользователями
+    @Override
+    public synchronized void saveData(Map<String, User> users) {
+        try {
+            writeFile(users);
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+            return;
+        }
+        dirtyUsers.clear();
+        usersRemoved = false;
+        synchronized (cacheLock) {
+            cache.clear();
+            liveUsers.clear();
+        }
+        try {
+            store = BinaryUserCodec.open(filePath);
+        } catch (IOException e) {
+            // Файл уже записан целиком; старый индекс к нему не подходит
+            throw new UncheckedIOException("Cannot reopen " + filePath, e);
+        }
+    }
+
+    // Полная загрузка всех пользователей (для конвертации и выгрузки)
+    @Override
+    public synchronized Map<String, User> loadData() {
+        Map<String, User> users = new HashMap<>();
+        for (String username : usernames()) {
+            User user = findLoaded(username);
+            users.put(
+                username,
+                user != null ? user : store.decodeUser(store.index.get(username))
+            );
+        }
+        return users;
+    }
+
+    private Set<String> usernames() {
+        Set<String> usernames = new LinkedHashSet<>();
+        if (store != null) {
+            usernames.addAll(store.index.keySet());
+        }
+        usernames.addAll(dirtyUsers.keySet());
+        return usernames;
+    }
+
+    // Страница истории пользователя, чей кошелек еще не загружен, читается прямо
+    // из файла (см. MappedStore.history); загруженный кошелек полнее файла,
+    // поэтому тогда страницу строит он (null)
+    @Override
+    public synchronized TransactionPage queryHistory(
+        String username,
+        HistoryQuery query
+    ) {
+        User user = findLoaded(username);
+        if (user != null && user.getWallet().isLoaded()) {
+            return null;
+        }
+        BinaryUserCodec.Segment segment = store != null
+            ? store.index.get(username)
+            : null;
+        return segment != null ? store.history(segment, query) : null;
+    }
+
+    // Поиск уже декодированного пользователя без обращения к файлу
+    private User findLoaded(String username) {
+        User user = dirtyUsers.get(username);
+        if (user != null) {
+            return user;
+        }
+        synchronized (cacheLock) {
+            user = cache.get(username);
+            if (user == null) {
+                UserReference reference = liveUsers.get(username);
+                user = reference != null ? reference.get() : null;
+            }
+            return user;
+        }
+    }
+
+    // Вызывается под cacheLock
+    private void expungeCollected() {
+        UserReference reference;
+        while ((reference = (UserReference) collectedUsers.poll()) != null) {
+            if (liveUsers.get(reference.username) == reference) {
+                liveUsers.remove(reference.username);
+            }
+        }
+    }
+
+    // Изменения кошельков накапливаются в памяти до фоновой записи
+    @Override
+    public void appendTransaction(String username, Transaction transaction) {
+        markDirty(username);
+    }
+
+    @Override
+    public void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {
+        markDirty(username);
+    }
+
+    @Override
+    public void updatePassword(String username, String passwordHash) {
+        markDirty(username);
+    }
+
+    private void markDirty(String username) {
+        User user = findLoaded(username);
+        if (user != null) {
+            dirtyUsers.put(username, user);
+            scheduler.recordChange();
+        }
+    }
+
+    // Не синхронизирован: ждет фоновый поток, которому нужен монитор сервиса
+    @Override
+    public void flush() {
+        scheduler.flush();
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+
+    private synchronized void writeDirty() {
+        if (!dirtyUsers.isEmpty() || usersRemoved) {
+            rewrite();
+        }
+    }
+
+    // Перезапись файла: измененные пользователи кодируются, остальные копируются побайтно.
+    // Пользователь, измененный во время записи, снова попадет в dirtyUsers и будет записан позже.
+    // При любой ошибке пачка возвращается в dirtyUsers: фоновый поток только пишет ошибку в лог
+    private void rewrite() {
+        Map<String, User> batch = new HashMap<>(dirtyUsers);
+        batch.forEach(dirtyUsers::remove);
+        Set<String> usernames = usernames();
+        usernames.addAll(batch.keySet());
+
+        Path tempPath = Paths.get(filePath + TEMP_SUFFIX);
+        boolean written = false;
+        try {
+            BinaryUserCodec.write(
+                tempPath,
+                store != null ? store.dictionary : new ArrayList<>(),
+                store,
+                usernames,
+                batch::get
+            );
+            SnapshotFiles.replace(tempPath, filePath);
+            store = BinaryUserCodec.open(filePath);
+            usersRemoved = false;
+            written = true;
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+            return;
+        } finally {
+            if (!written) {
+                batch.forEach(dirtyUsers::putIfAbsent);
+            }
+        }
+        // Записанные пользователи снова могут вытесняться из кэша
+        synchronized (cacheLock) {
+            cache.putAll(batch);
+        }
+    }
+
+    // Операции с пользователями
+    public synchronized void addUser(User user) {
+        synchronized (cacheLock) {
+            liveUsers.put(
+                user.getUsername(),
+                new UserReference(user, collectedUsers)
+            );
+        }
+        dirtyUsers.put(user.getUsername(), user);
+        scheduler.recordChange();
+    }
+
+    public synchronized User getUser(String username) {
+        User user = findLoaded(username);
+        if (user == null) {
+            BinaryUserCodec.Segment segment = store != null
+                ? store.index.get(username)
+                : null;
+            if (segment == null) {
+                return null;
+            }
+            user = store.decodeUser(segment);
+        }
+        synchronized (cacheLock) {
+            expungeCollected();
+            UserReference reference = liveUsers.get(username);
+            if (reference == null || reference.get() != user) {
+                liveUsers.put(
+                    username,
+                    new UserReference(user, collectedUsers)
+                );
+            }
+            if (!dirtyUsers.containsKey(username)) {
+                cache.put(username, user);
+            }
+        }
+        return user;
+    }
+
+    public synchronized boolean userExists(String username) {
+        return (
+            dirtyUsers.containsKey(username) ||
+            (store != null && store.index.containsKey(username))
+        );
+    }
+
+    public synchronized void removeUser(String username) {
+        dirtyUsers.remove(username);
+        synchronized (cacheLock) {
+            cache.remove(username);
+            liveUsers.remove(username);
+        }
+        // Сегмент остается в файле до следующей записи, но из индекса уже исключен
+        if (store != null && store.index.remove(username) != null) {
+            usersRemoved = true;
+            scheduler.recordChange();
+        }
+    }
+}
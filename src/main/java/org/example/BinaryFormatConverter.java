@@ -0,0 +1,71 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// Конвертер между JSON-хранилищем (users.json + журнал) и двоичным форматом.
+// Запускается из FinanceApplication: --convert to-binary|to-json <источник> <назначение>
+public final class BinaryFormatConverter {
+
+    public static final String TO_BINARY = "to-binary";
+    public static final String TO_JSON = "to-json";
+
+    private BinaryFormatConverter() {}
+
+    public static void convert(String direction, Path source, Path target) {
+        switch (direction) {
+            case TO_BINARY -> jsonToBinary(source, target);
+            case TO_JSON -> binaryToJson(source, target);
+            default -> throw new IllegalArgumentException(
+                "Unknown direction " +
+                direction +
+                ", expected " +
+                TO_BINARY +
+                " or " +
+                TO_JSON
+            );
+        }
+    }
+
+    // users.json -> users.bin; пользователи берутся из уже загруженного источника
+    public static void jsonToBinary(Path jsonPath, Path binaryPath) {
+        Map<String, User> users = new HashMap<>();
+        FileDataService source = new FileDataService(jsonPath);
+        try {
+            for (User user : source.getAllUsers()) {
+                users.put(user.getUsername(), user);
+            }
+        } finally {
+            source.close();
+        }
+        BinaryDataService target = new BinaryDataService(binaryPath);
+        try {
+            target.saveData(users);
+        } finally {
+            target.close();
+        }
+    }
+
+    // users.bin -> users.json; файл читается один раз, без сервиса, поэтому источник
+    // старой версии не переписывается
+    public static void binaryToJson(Path binaryPath, Path jsonPath) {
+        Map<String, User> users;
+        try {
+            users = BinaryUserCodec.read(binaryPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                "Cannot read binary storage " + binaryPath,
+                e
+            );
+        }
+        FileDataService target = new FileDataService(jsonPath);
+        try {
+            target.saveData(users);
+        } finally {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Кодек двоичного формата хранения пользователей.
+// Формат версии 3 (big-endian):
+//   int magic, short version
+//   int categoryCount, category[categoryCount]          - словарь категорий
+//   int userCount, segment[userCount]                   - по сегменту на пользователя
+//   index: (string username, int offset, int length)[userCount]
+//   int indexOffset                                     - последние 4 байта файла
+//   segment: string username, string password,
+//            int budgetCount, (int categoryId, amount)[budgetCount],
+//            int transactionCount, transaction[transactionCount],
+//            timeIndex[transactionCount]
+//   transaction: byte type, int categoryId, amount, long epochSecond, int nano
+//   timeIndex: long epochMicros, int row, int offset - по возрастанию (время, строка);
+//              offset отсчитывается от начала сегмента, поэтому сегмент копируется как есть
+//   amount: byte scale, byte length; length == 0 - далее long, иначе length байт BigInteger
+//   string: int length, UTF-8 bytes
+// Версия 2 отличается отсутствием индекса времени, версия 1 - еще и индекса пользователей;
+// обе читаются только целиком.
+public final class BinaryUserCodec {
+
+    static final int MAGIC = 0x53464E42; // "SFNB"
+    static final short VERSION = 3;
+    static final short VERSION_WITHOUT_TIME_INDEX = 2;
+    static final short VERSION_WITHOUT_INDEX = 1;
+    // Размер элемента индекса времени
+    private static final int TIME_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    private BinaryUserCodec() {}
+
+    // Расположение сегмента пользователя в файле
+    static final class Segment {
+
+        final int offset;
+        final int length;
+
+        Segment(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // Открытый файл: отображенный буфер, словарь категорий и индекс username -> сегмент
+    static final class MappedStore {
+
+        final ByteBuffer buffer;
+        final List<String> dictionary;
+        final Map<String, Segment> index;
+
+        private MappedStore(
+            ByteBuffer buffer,
+            List<String> dictionary,
+            Map<String, Segment> index
+        ) {
+            this.buffer = buffer;
+            this.dictionary = dictionary;
+            this.index = index;
+        }
+
+        // Декодируются только имя и пароль; кошелек загрузится при первом обращении
+        User decodeUser(Segment segment) {
+            ByteBuffer slice = buffer
+                .duplicate()
+                .position(segment.offset)
+                .limit(segment.offset + segment.length);
+            User user = new User(readString(slice), readString(slice));
+            ByteBuffer walletPart = slice.slice();
+            user
+                .getWallet()
+                .setLoader(wallet -> readWallet(walletPart, wallet, dictionary));
+            return user;
+        }
+
+        // Страница истории прямо из сегмента, без загрузки кошелька: двоичный поиск
+        // по индексу времени ведет к позиции курсора (или границе периода), дальше
+        // индекс читается по порядку до limit + 1 подходящих строк. Номер строки
+        // совпадает с номером в загруженном кошельке, поэтому курсоры взаимозаменяемы
+        // с Wallet.getHistory. Фильтры по типу и категории проверяются по первым
+        // байтам записи; декодируются только строки страницы
+        TransactionPage history(Segment segment, HistoryQuery query) {
+            String category = query.getCategory();
+            if (category != null && Categories.find(category) < 0) {
+                return new TransactionPage(List.of(), null);
+            }
+            boolean[] categories = new boolean[dictionary.size()];
+            for (int id = 0; id < categories.length; id++) {
+                categories[id] =
+                    category == null || dictionary.get(id).equals(category);
+            }
+            TransactionType type = query.getType();
+            long fromMicros = Wallet.boundMicros(
+                query.getFrom(),
+                Long.MIN_VALUE
+            );
+            long toMicros = Wallet.boundMicros(query.getTo(), Long.MAX_VALUE);
+            HistoryCursor cursor = query.getCursor();
+            boolean newestFirst = query.isNewestFirst();
+
+            ByteBuffer slice = buffer
+                .duplicate()
+                .position(segment.offset)
+                .limit(segment.offset + segment.length);
+            skipString(slice);
+            skipString(slice);
+            int budgetCount = slice.getInt();
+            for (int i = 0; i < budgetCount; i++) {
+                slice.getInt();
+                skipAmount(slice);
+            }
+            int count = slice.getInt();
+            int indexStart =
+                segment.offset + segment.length - count * TIME_ENTRY_BYTES;
+
+            // Диапазон [first, end) индекса внутри периода и после курсора
+            int first = lowerBound(
+                indexStart,
+                count,
+                fromMicros,
+                Long.MIN_VALUE
+            );
+            int end = lowerBound(indexStart, count, toMicros, Long.MIN_VALUE);
+            if (cursor != null) {
+                long cursorMicros = Wallet.boundMicros(cursor.getDateTime(), 0);
+                long position = cursor.getPosition();
+                if (newestFirst) {
+                    end = Math.min(
+                        end,
+                        lowerBound(indexStart, count, cursorMicros, position)
+                    );
+                } else {
+                    first = Math.max(
+                        first,
+                        lowerBound(
+                            indexStart,
+                            count,
+                            cursorMicros,
+                            position + 1
+                        )
+                    );
+                }
+            }
+
+            // Позиции элементов индекса, попавших на страницу, и одного следующего
+            int limit = query.getLimit();
+            List<Integer> matched = new ArrayList<>(limit + 1);
+            int step = newestFirst ? -1 : 1;
+            for (
+                int i = newestFirst ? end - 1 : first;
+                i >= first && i < end && matched.size() <= limit;
+                i += step
+            ) {
+                int record =
+                    segment.offset + buffer.getInt(entry(indexStart, i) + 12);
+                if (
+                    (type == null || buffer.get(record) == type.ordinal()) &&
+                    categories[buffer.getInt(record + 1)]
+                ) {
+                    matched.add(i);
+                }
+            }
+
+            int size = Math.min(matched.size(), limit);
+            TransactionType[] types = TransactionType.values();
+            List<Transaction> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int entry = entry(indexStart, matched.get(i));
+                ByteBuffer record = buffer
+                    .duplicate()
+                    .position(segment.offset + buffer.getInt(entry + 12));
+                TransactionType rowType = types[record.get()];
+                String rowCategory = dictionary.get(record.getInt());
+                // Как в кошельке: копейки и микросекунды
+                long amount = Money.toMinorUnitsRounded(readAmount(record));
+                result.add(
+                    new Transaction(
+                        Money.toBigDecimal(amount),
+                        rowCategory,
+                        rowType,
+                        TransactionColumns.fromEpochMicros(
+                            buffer.getLong(entry)
+                        )
+                    )
+                );
+            }
+            String nextCursor = null;
+            if (matched.size() > size) {
+                int last = entry(indexStart, matched.get(size - 1));
+                nextCursor = new HistoryCursor(
+                    TransactionColumns.fromEpochMicros(buffer.getLong(last)),
+                    buffer.getInt(last + 8)
+                ).encode();
+            }
+            return new TransactionPage(result, nextCursor);
+        }
+
+        // Число элементов индекса времени, меньших (micros, row)
+        private int lowerBound(
+            int indexStart,
+            int count,
+            long micros,
+            long row
+        ) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int entry = entry(indexStart, middle);
+                long entryMicros = buffer.getLong(entry);
+                int compared = entryMicros != micros
+                    ? Long.compare(entryMicros, micros)
+                    : Long.compare(buffer.getInt(entry + 8), row);
+                if (compared < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private static int entry(int indexStart, int position) {
+            return indexStart + position * TIME_ENTRY_BYTES;
+        }
+
+        byte[] rawSegment(Segment segment) {
+            byte[] bytes = new byte[segment.length];
+            buffer.duplicate().position(segment.offset).get(bytes);
+            return bytes;
+        }
+    }
+
+    // Отображение файла в память и чтение индекса; содержимое пользователей не декодируется.
+    // Только текущая версия: файлы старых версий переписываются после чтения целиком
+    static MappedStore open(Path path) throws IOException {
+        ByteBuffer buffer = map(path);
+        short version = readHeader(buffer);
+        if (version != VERSION) {
+            throw new IOException(
+                "Binary format version " + version + " has no time index"
+            );
+        }
+        return readIndex(buffer);
+    }
+
+    // Словарь и индекс пользователей файла версии 2 или 3; буфер - после заголовка
+    private static MappedStore readIndex(ByteBuffer buffer) {
+        List<String> dictionary = readDictionary(buffer);
+        int userCount = buffer.getInt();
+
+        int indexOffset = buffer.getInt(buffer.limit() - Integer.BYTES);
+        ByteBuffer indexBuffer = buffer.duplicate().position(indexOffset);
+        Map<String, Segment> index = new HashMap<>();
+        for (int i = 0; i < userCount; i++) {
+            String username = readString(indexBuffer);
+            index.put(
+                username,
+                new Segment(indexBuffer.getInt(), indexBuffer.getInt())
+            );
+        }
+        return new MappedStore(buffer, dictionary, index);
+    }
+
+    static short version(Path path) throws IOException {
+        return readHeader(map(path));
+    }
+
+    // Запись всех пользователей в файл
+    public static void write(Map<String, User> users, Path path)
+        throws IOException {
+        write(path, new ArrayList<>(), null, users.keySet(), users::get);
+    }
+
+    // Запись файла: пользователи, для которых lookup вернул объект, кодируются заново,
+    // остальные копируются из старого файла побайтно без декодирования.
+    // Словарь старого файла должен быть префиксом нового, чтобы id категорий не менялись.
+    static void write(
+        Path path,
+        List<String> baseDictionary,
+        MappedStore previous,
+        Collection<String> usernames,
+        Function<String, User> lookup
+    ) throws IOException {
+        // Старые файлы могут содержать написания одной категории, которые после
+        // нормализации совпали; их позиции сохраняются ради копируемых сегментов
+        List<String> categories = new ArrayList<>(baseDictionary);
+        Map<String, Integer> dictionary = new HashMap<>();
+        for (int i = 0; i < categories.size(); i++) {
+            dictionary.putIfAbsent(categories.get(i), i);
+        }
+        // Снимок кошелька снимается один раз и идет и в словарь, и в сегмент: категория,
+        // добавленная в кошелек во время записи, не попадет в сегмент без номера
+        Map<String, UserSnapshot> snapshots = new HashMap<>();
+        for (String username : usernames) {
+            User user = lookup.apply(username);
+            if (user == null) {
+                continue;
+            }
+            UserSnapshot snapshot = new UserSnapshot(user);
+            snapshots.put(username, snapshot);
+            for (String category : snapshot.budgets.keySet()) {
+                addCategory(categories, dictionary, category);
+            }
+            for (Transaction transaction : snapshot.transactions) {
+                addCategory(categories, dictionary, transaction.getCategory());
+            }
+        }
+
+        Map<String, Segment> index = new LinkedHashMap<>();
+        try (
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)
+            )
+        ) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            out.writeInt(categories.size());
+            for (String category : categories) {
+                writeString(out, category);
+            }
+
+            out.writeInt(usernames.size());
+            for (String username : usernames) {
+                int offset = out.size();
+                UserSnapshot snapshot = snapshots.get(username);
+                if (snapshot != null) {
+                    writeUser(out, offset, snapshot, dictionary);
+                } else {
+                    out.write(
+                        previous.rawSegment(previous.index.get(username))
+                    );
+                }
+                index.put(username, new Segment(offset, out.size() - offset));
+            }
+
+            int indexOffset = out.size();
+            for (Map.Entry<String, Segment> entry : index.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().offset);
+                out.writeInt(entry.getValue().length);
+            }
+            out.writeInt(indexOffset);
+        }
+    }
+
+    private static void addCategory(
+        List<String> categories,
+        Map<String, Integer> dictionary,
+        String category
+    ) {
+        if (dictionary.putIfAbsent(category, categories.size()) == null) {
+            categories.add(category);
+        }
+    }
+
+    // Пользователь на момент записи: бюджеты и транзакции сняты под блокировкой кошелька
+    private static final class UserSnapshot {
+
+        private final String username;
+        private final String password;
+        private final Map<String, BigDecimal> budgets;
+        private final List<Transaction> transactions;
+
+        private UserSnapshot(User user) {
+            Wallet wallet = user.getWallet();
+            this.username = user.getUsername();
+            this.password = user.getPassword();
+            this.budgets = wallet.getBudgets();
+            this.transactions = wallet.getTransactions();
+        }
+    }
+
+    // segmentStart - позиция начала сегмента в потоке, от нее отсчитываются смещения индекса
+    private static void writeUser(
+        DataOutputStream out,
+        int segmentStart,
+        UserSnapshot user,
+        Map<String, Integer> dictionary
+    ) throws IOException {
+        writeString(out, user.username);
+        writeString(out, user.password);
+
+        out.writeInt(user.budgets.size());
+        for (Map.Entry<String, BigDecimal> entry : user.budgets.entrySet()) {
+            out.writeInt(dictionary.get(entry.getKey()));
+            writeAmount(out, entry.getValue());
+        }
+
+        List<Transaction> transactions = user.transactions;
+        int count = transactions.size();
+        long[] micros = new long[count];
+        int[] offsets = new int[count];
+        out.writeInt(count);
+        for (int row = 0; row < count; row++) {
+            Transaction transaction = transactions.get(row);
+            micros[row] = TransactionColumns.toEpochMicros(
+                transaction.getDateTime()
+            );
+            offsets[row] = out.size() - segmentStart;
+            out.writeByte(transaction.getType().ordinal());
+            out.writeInt(dictionary.get(transaction.getCategory()));
+            writeAmount(out, transaction.getAmount());
+            LocalDateTime dateTime = transaction.getDateTime();
+            out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(dateTime.getNano());
+        }
+
+        // Сортировка устойчивая: строки с одинаковым временем остаются по порядку
+        Integer[] rows = new Integer[count];
+        for (int row = 0; row < count; row++) {
+            rows[row] = row;
+        }
+        Arrays.sort(rows, Comparator.comparingLong(row -> micros[row]));
+        for (int row : rows) {
+            out.writeLong(micros[row]);
+            out.writeInt(row);
+            out.writeInt(offsets[row]);
+        }
+    }
+
+    // Суммы храним как немасштабированное значение + масштаб, без разбора текста
+    private static void writeAmount(DataOutputStream out, BigDecimal amount)
+        throws IOException {
+        int scale = amount.scale();
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IOException("Unsupported amount scale: " + scale);
+        }
+        out.writeByte(scale);
+        BigInteger unscaled = amount.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            out.writeByte(0);
+            out.writeLong(unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            if (bytes.length > 0xFF) {
+                throw new IOException("Amount is too large: " + amount);
+            }
+            out.writeByte(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+        throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Полное чтение всех пользователей из файла (любой поддерживаемой версии)
+    public static Map<String, User> read(Path path) throws IOException {
+        ByteBuffer buffer = map(path);
+        short version = readHeader(buffer);
+        if (version != VERSION_WITHOUT_INDEX) {
+            MappedStore store = readIndex(buffer);
+            Map<String, User> users = new HashMap<>();
+            for (Map.Entry<String, Segment> entry : store.index.entrySet()) {
+                users.put(entry.getKey(), store.decodeUser(entry.getValue()));
+            }
+            return users;
+        }
+
+        List<String> dictionary = readDictionary(buffer);
+        int userCount = buffer.getInt();
+        Map<String, User> users = new HashMap<>();
+        for (int i = 0; i < userCount; i++) {
+            User user = new User(readString(buffer), readString(buffer));
+            readWallet(buffer, user.getWallet(), dictionary);
+            users.put(user.getUsername(), user);
+        }
+        return users;
+    }
+
+    // Чтение файла через отображение в память
+    private static ByteBuffer map(Path path) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.READ
+            )
+        ) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static short readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a simple-finance binary file");
+        }
+        short version = buffer.getShort();
+        if (
+            version != VERSION &&
+            version != VERSION_WITHOUT_TIME_INDEX &&
+            version != VERSION_WITHOUT_INDEX
+        ) {
+            throw new IOException(
+                "Unsupported binary format version: " + version
+            );
+        }
+        return version;
+    }
+
+    // Каждая категория декодируется один раз и сводится к имени из общего словаря
+    private static List<String> readDictionary(ByteBuffer buffer) {
+        int categoryCount = buffer.getInt();
+        List<String> dictionary = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            dictionary.add(Categories.normalize(readString(buffer)));
+        }
+        return dictionary;
+    }
+
+    private static void readWallet(
+        ByteBuffer buffer,
+        Wallet wallet,
+        List<String> dictionary
+    ) {
+        int budgetCount = buffer.getInt();
+        for (int i = 0; i < budgetCount; i++) {
+            String category = dictionary.get(buffer.getInt());
+            wallet.setBudget(category, readAmount(buffer));
+        }
+
+        TransactionType[] types = TransactionType.values();
+        int transactionCount = buffer.getInt();
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = types[buffer.get()];
+            String category = dictionary.get(buffer.getInt());
+            BigDecimal amount = readAmount(buffer);
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(
+                buffer.getLong(),
+                buffer.getInt(),
+                ZoneOffset.UTC
+            );
+            wallet.addTransaction(
+                new Transaction(amount, category, type, dateTime)
+            );
+        }
+    }
+
+    private static BigDecimal readAmount(ByteBuffer buffer) {
+        int scale = buffer.get();
+        int length = buffer.get() & 0xFF;
+        if (length == 0) {
+            return BigDecimal.valueOf(buffer.getLong(), scale);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    private static void skipAmount(ByteBuffer buffer) {
+        buffer.get();
+        int length = buffer.get() & 0xFF;
+        buffer.position(
+            buffer.position() + (length == 0 ? Long.BYTES : length)
+        );
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
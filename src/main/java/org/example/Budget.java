@@ -1,17 +1,16 @@
 package org.example;
 
+// Бюджет категории: лимит и потраченная сумма в Money, как и в Wallet
 public class Budget {
     private final String category;
-    private double limit;
-    private double spent;
+    private Money limit;
+    private Money spent;
 
-    public Budget(String category, double limit) {
-        this.category = category;
-        this.limit = limit;
-        this.spent = 0.0;
+    public Budget(String category, Money limit) {
+        this(category, limit, Money.ZERO);
     }
 
-    public Budget(String category, double limit, double spent) {
+    public Budget(String category, Money limit, Money spent) {
         this.category = category;
         this.limit = limit;
         this.spent = spent;
@@ -21,23 +20,28 @@ public class Budget {
         return category;
     }
 
-    public double getLimit() {
+    public Money getLimit() {
         return limit;
     }
 
-    public void setLimit(double limit) {
+    public void setLimit(Money limit) {
         this.limit = limit;
     }
 
-    public double getSpent() {
+    public Money getSpent() {
         return spent;
     }
 
-    public void addSpent(double amount) {
-        this.spent += amount;
+    public void addSpent(Money amount) {
+        this.spent = spent.plus(amount);
+    }
+
+    public Money getRemainingAmount() {
+        return limit.minus(spent);
     }
 
-    public double getRemainingAmount() {
-        return limit - spent;
+    // Превысит ли расход amount лимит
+    public boolean wouldExceed(Money amount) {
+        return spent.plus(amount).compareTo(limit) > 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import java.math.BigDecimal;
+
+// Событие монитора бюджетов: расходы категории достигли порога (в процентах от лимита)
+public class BudgetEvent {
+
+    private final String username;
+    private final String category;
+    private final int thresholdPercent;
+    private final Money limit;
+    private final Money spent;
+
+    BudgetEvent(
+        String username,
+        String category,
+        int thresholdPercent,
+        Money limit,
+        Money spent
+    ) {
+        this.username = username;
+        this.category = category;
+        this.thresholdPercent = thresholdPercent;
+        this.limit = limit;
+        this.spent = spent;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    public BigDecimal getLimit() {
+        return limit.toBigDecimal();
+    }
+
+    public BigDecimal getSpent() {
+        return spent.toBigDecimal();
+    }
+
+    // Порог 100% и выше - бюджет исчерпан или превышен
+    public boolean isLimitReached() {
+        return thresholdPercent >= 100;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "Budget for %s reached %d%%: spent %s of %s",
+            category,
+            thresholdPercent,
+            spent,
+            limit
+        );
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Асинхронная доставка событий бюджетов подписчикам.
+// publish только ставит событие в очередь и не ждет подписчиков; события доставляются
+// одним фоновым потоком в порядке публикации. Ошибка подписчика не мешает остальным.
+// После close события доставляются синхронно в потоке публикации
+public class BudgetEventBus implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final List<BudgetListener> listeners;
+    private final ExecutorService executor;
+    private final AtomicBoolean closed;
+
+    public BudgetEventBus() {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "budget-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.closed = new AtomicBoolean(false);
+    }
+
+    public void subscribe(BudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(BudgetListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Не блокируется; может вызываться под блокировкой кошелька
+    public void publish(BudgetEvent event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (closed.get()) {
+            deliver(event);
+            return;
+        }
+        executor.execute(() -> deliver(event));
+    }
+
+    private void deliver(BudgetEvent event) {
+        for (BudgetListener listener : listeners) {
+            try {
+                listener.onBudgetEvent(event);
+            } catch (RuntimeException e) {
+                System.err.println(
+                    "Error in budget listener: " + e.getMessage()
+                );
+            }
+        }
+    }
+
+    // Доставка уже опубликованных событий и остановка потока
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(
+                CLOSE_TIMEOUT_MILLIS,
+                TimeUnit.MILLISECONDS
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
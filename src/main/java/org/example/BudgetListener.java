@@ -0,0 +1,7 @@
+package org.example;
+
+// Получатель событий монитора бюджетов; вызывается в потоке шины событий
+@FunctionalInterface
+public interface BudgetListener {
+    void onBudgetEvent(BudgetEvent event);
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import java.util.Arrays;
+
+// Отслеживание порогов бюджетов по мере добавления расходов.
+// Состояние бюджета (лимит и расходы категории) уже поддерживается в Wallet накопительными
+// итогами, поэтому проверка расхода - сравнение с несколькими порогами, O(1) на расход.
+// Событие публикуется, когда расход переводит категорию через порог; повторные расходы
+// выше порога новых событий по нему не создают
+public class BudgetMonitor {
+
+    public static final int[] DEFAULT_THRESHOLDS = { 80, 100 };
+
+    private final int[] thresholds;
+    private final BudgetEventBus eventBus;
+
+    public BudgetMonitor(BudgetEventBus eventBus) {
+        this(eventBus, DEFAULT_THRESHOLDS);
+    }
+
+    // thresholds - пороги в процентах от лимита
+    public BudgetMonitor(BudgetEventBus eventBus, int... thresholds) {
+        int[] sorted = thresholds.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] <= 0) {
+            throw new IllegalArgumentException("Thresholds must be positive");
+        }
+        this.thresholds = sorted;
+        this.eventBus = eventBus;
+    }
+
+    public BudgetEventBus getEventBus() {
+        return eventBus;
+    }
+
+    // budget - лимит и расходы категории до этого расхода; вызывается после записи расхода
+    void onExpense(String username, Budget budget, Money amount) {
+        long limit = budget.getLimit().getMinorUnits();
+        if (limit <= 0) {
+            return;
+        }
+        long before = budget.getSpent().getMinorUnits();
+        long after = before + amount.getMinorUnits();
+        for (int threshold : thresholds) {
+            long boundary = boundary(limit, threshold);
+            if (before < boundary && after >= boundary) {
+                eventBus.publish(
+                    new BudgetEvent(
+                        username,
+                        budget.getCategory(),
+                        threshold,
+                        budget.getLimit(),
+                        Money.ofMinorUnits(after)
+                    )
+                );
+            }
+        }
+    }
+
+    // Наименьшая сумма расходов, при которой порог считается достигнутым
+    private static long boundary(long limit, int percent) {
+        try {
+            long scaled = Math.multiplyExact(limit, (long) percent);
+            return Math.floorDiv(Math.addExact(scaled, 99), 100);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Общий для всех пользователей словарь категорий: имя -> компактный номер.
+// Имя нормализуется один раз при регистрации: пробелы по краям отбрасываются, внутренние
+// сворачиваются в один, а написания, отличающиеся только регистром, сводятся к первому
+// встреченному. Каждой категории соответствует единственный экземпляр String, поэтому
+// сравнение ключей в картах по категориям сводится к сравнению ссылок, а хеш уже посчитан.
+// Номера только добавляются и не переиспользуются; в файлы они не пишутся.
+// Словарь никогда не очищается, поэтому категория регистрируется только при сохранении
+// транзакции или бюджета (id, normalize); запросы и проверки пользуются find и lookup
+public final class Categories {
+
+    // Канонические имена -> номер
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Ключ сравнения (нормализованное имя в нижнем регистре) -> номер
+    private static final Map<String, Integer> keys = new ConcurrentHashMap<>();
+    // Номер -> каноническое имя; элемент записывается до публикации номера в ids
+    private static volatile String[] names = new String[64];
+    private static volatile int count = 0;
+
+    private Categories() {}
+
+    // Каноническое написание категории
+    public static String normalize(String category) {
+        return name(id(category));
+    }
+
+    // Написание для поиска без регистрации: каноническое, если категория известна,
+    // иначе - со свернутыми пробелами (под таким именем она была бы зарегистрирована)
+    public static String lookup(String category) {
+        int id = find(category);
+        return id >= 0 ? name(id) : collapseWhitespace(category);
+    }
+
+    // Ключ сравнения без регистрации: одинаков для всех написаний категории
+    static String key(String category) {
+        return keyOf(collapseWhitespace(category));
+    }
+
+    // Номер уже известной категории или -1; словарь не пополняется
+    static int find(String category) {
+        Integer id = ids.get(category);
+        if (id == null) {
+            id = keys.get(keyOf(collapseWhitespace(category)));
+        }
+        return id != null ? id : -1;
+    }
+
+    // Номер категории; для уже канонического имени - один поиск в хеш-таблице
+    static int id(String category) {
+        Integer id = ids.get(category);
+        if (id != null) {
+            return id;
+        }
+        String canonical = collapseWhitespace(category);
+        id = keys.get(keyOf(canonical));
+        return id != null ? id : register(canonical);
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+
+    // Все выданные номера меньше этого значения
+    static int count() {
+        return count;
+    }
+
+    private static synchronized int register(String canonical) {
+        String key = keyOf(canonical);
+        Integer existing = keys.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int id = count;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+        }
+        names[id] = canonical;
+        count = id + 1;
+        keys.put(key, id);
+        ids.put(canonical, id);
+        return id;
+    }
+
+    private static String keyOf(String canonical) {
+        return canonical.toLowerCase(Locale.ROOT);
+    }
+
+    private static String collapseWhitespace(String category) {
+        String trimmed = category.strip();
+        StringBuilder result = new StringBuilder(trimmed.length());
+        boolean space = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                result.append(' ');
+                space = false;
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
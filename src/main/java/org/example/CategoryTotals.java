@@ -0,0 +1,52 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+// Суммы по категориям в копейках (см. Money). Значения хранятся в изменяемых ячейках
+// и обновляются на месте, поэтому добавление суммы не создает объектов
+final class CategoryTotals {
+
+    private final Map<String, long[]> totals = new HashMap<>();
+
+    void add(String category, long minorUnits) {
+        long[] cell = totals.computeIfAbsent(category, key -> new long[1]);
+        cell[0] = Math.addExact(cell[0], minorUnits);
+    }
+
+    void addAll(CategoryTotals other) {
+        other.totals.forEach((category, cell) -> add(category, cell[0]));
+    }
+
+    long get(String category) {
+        long[] cell = totals.get(category);
+        return cell != null ? cell[0] : 0;
+    }
+
+    boolean contains(String category) {
+        return totals.containsKey(category);
+    }
+
+    void clear() {
+        totals.clear();
+    }
+
+    boolean isEmpty() {
+        return totals.isEmpty();
+    }
+
+    void forEach(ObjLongConsumer<String> action) {
+        totals.forEach((category, cell) -> action.accept(category, cell[0]));
+    }
+
+    // Преобразование на границе API
+    Map<String, BigDecimal> toBigDecimalMap() {
+        Map<String, BigDecimal> result = new HashMap<>();
+        totals.forEach((category, cell) ->
+            result.put(category, Money.toBigDecimal(cell[0]))
+        );
+        return result;
+    }
+}
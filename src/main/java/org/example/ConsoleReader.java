@@ -1,12 +1,23 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 import java.util.Scanner;
 
 // Обработка консольного ввода/вывода и управление взаимодействием с пользователем
 public class ConsoleReader {
 
+    private static final int HISTORY_PAGE_SIZE = 20;
+
     private final Scanner scanner;
     private final AuthenticationService authService;
     private final FinancialOperationService financialService;
@@ -27,24 +38,24 @@ public class ConsoleReader {
     public void start() {
         boolean running = true;
         while (running) {
-            if (!authService.isAuthenticated()) {
-                running = handleAuthenticationMenu();
-            } else {
-                running = handleMainMenu();
+            try {
+                if (!authService.isAuthenticated()) {
+                    running = handleAuthenticationMenu();
+                } else {
+                    running = handleMainMenu();
+                }
+            } catch (StorageException e) {
+                // Изменение не сохранено и отменено; работа продолжается
+                System.out.println("Operation failed: " + e.getMessage());
             }
         }
         saveAndExit();
     }
 
-    // Сохранение данных о пользователе при выходе
+    // Сохранение данных при выходе: сброс накопленных изменений и остановка фоновой записи
     private void saveAndExit() {
         try {
-            if (authService.isAuthenticated()) {
-                User currentUser = authService.getCurrentUser();
-                dataService.saveData(
-                    Map.of(currentUser.getUsername(), currentUser)
-                );
-            }
+            dataService.close();
         } finally {
             scanner.close();
         }
@@ -78,8 +89,11 @@ public class ConsoleReader {
         System.out.println("3. Set Budget");
         System.out.println("4. View Balance");
         System.out.println("5. View Statistics");
-        System.out.println("6. Logout");
-        System.out.println("7. Exit");
+        System.out.println("6. View Monthly Report");
+        System.out.println("7. Import Transactions (CSV)");
+        System.out.println("8. View Transaction History");
+        System.out.println("9. Logout");
+        System.out.println("10. Exit");
         System.out.print("Choose option: ");
 
         String choice = scanner.nextLine();
@@ -89,11 +103,14 @@ public class ConsoleReader {
             case "3" -> handleSetBudget();
             case "4" -> handleViewBalance();
             case "5" -> handleViewStatistics();
-            case "6" -> {
+            case "6" -> handleViewMonthlyReport();
+            case "7" -> handleImportTransactions();
+            case "8" -> handleViewHistory();
+            case "9" -> {
                 authService.logout();
                 System.out.println("Logged out successfully");
             }
-            case "7" -> {
+            case "10" -> {
                 return false;
             }
             default -> System.out.println("Invalid option");
@@ -131,6 +148,11 @@ public class ConsoleReader {
         }
     }
 
+    // Оповещение о достижении порога бюджета; приходит из потока шины событий
+    public void showBudgetAlert(BudgetEvent event) {
+        System.out.println("\n[Budget alert] " + event);
+    }
+
     // Добавление дохода
     private void handleAddIncome() {
         try {
@@ -207,23 +229,104 @@ public class ConsoleReader {
             );
 
         System.out.println("\nExpenses by category:");
-        financialService
-            .getExpensesByCategory()
-            .forEach((category, amount) ->
-                System.out.println(category + ": " + amount)
-            );
+        Map<String, BigDecimal> expenses =
+            financialService.getExpensesByCategory();
+        expenses.forEach((category, amount) ->
+            System.out.println(category + ": " + amount)
+        );
 
         System.out.println("\nBudgets by category:");
         financialService
             .getBudgetsByCategory()
             .forEach((category, budget) -> {
-                BigDecimal spent = financialService
-                    .getExpensesByCategory()
-                    .getOrDefault(category, BigDecimal.ZERO);
+                BigDecimal spent = expenses.getOrDefault(
+                    category,
+                    BigDecimal.ZERO
+                );
                 BigDecimal remaining = budget.subtract(spent);
                 System.out.println(
                     category + ": Budget=" + budget + ", Remaining=" + remaining
                 );
             });
     }
+
+    // Отчет за месяц
+    private void handleViewMonthlyReport() {
+        try {
+            System.out.print("Enter month (YYYY-MM): ");
+            YearMonth month = YearMonth.parse(scanner.nextLine().trim());
+            PeriodReport report = financialService
+                .getMonthlyReports(month, month)
+                .get(month);
+
+            System.out.println("\n=== Report for " + month + " ===");
+            System.out.println("Total income: " + report.getTotalIncome());
+            System.out.println("Total expenses: " + report.getTotalExpenses());
+            System.out.println("Income by category:");
+            report
+                .getIncomesByCategory()
+                .forEach((category, amount) ->
+                    System.out.println(category + ": " + amount)
+                );
+            System.out.println("Expenses by category:");
+            report
+                .getExpensesByCategory()
+                .forEach((category, amount) ->
+                    System.out.println(category + ": " + amount)
+                );
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid month format");
+        }
+    }
+
+    // История транзакций от новых к старым, постранично
+    private void handleViewHistory() {
+        System.out.println("\n=== Transaction History ===");
+        String cursor = null;
+        do {
+            TransactionPage page = financialService.getTransactionHistory(
+                new HistoryQuery(HISTORY_PAGE_SIZE, true).after(cursor)
+            );
+            page.getTransactions().forEach(System.out::println);
+            cursor = page.getNextCursor();
+            if (page.getTransactions().isEmpty()) {
+                System.out.println("No transactions");
+            }
+            if (cursor != null) {
+                System.out.print("Enter - next page, q - back: ");
+            }
+        } while (cursor != null && !scanner.nextLine().trim().equals("q"));
+    }
+
+    // Импорт транзакций из CSV файла. Ошибки не выходят из меню: иначе приложение
+    // завершилось бы без saveAndExit и несброшенные изменения были бы потеряны
+    private void handleImportTransactions() {
+        System.out.print("Enter CSV file path (date,type,category,amount): ");
+        Path path;
+        try {
+            path = Paths.get(scanner.nextLine().trim());
+        } catch (InvalidPathException e) {
+            System.out.println("Invalid file path: " + e.getMessage());
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(path)) {
+            ImportResult result = financialService.importTransactions(
+                reader,
+                true
+            );
+            System.out.println(
+                "Imported: " +
+                result.getImportedCount() +
+                ", rejected: " +
+                result.getRejectedCount()
+            );
+            result
+                .getRejectedRows()
+                .forEach(row -> System.out.println("  " + row));
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+        } catch (FinancialOperationException | IllegalArgumentException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
 }
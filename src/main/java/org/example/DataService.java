@@ -1,5 +1,9 @@
 package org.example;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public interface DataService {
@@ -9,4 +13,73 @@ public interface DataService {
     User getUser(String username);
     boolean userExists(String username);
     void removeUser(String username);
-}
\ No newline at end of file
+
+    // Все пользователи для сводных отчетов; изменения во время обхода могут быть не видны
+    default Collection<User> getAllUsers() {
+        return loadData().values();
+    }
+
+    // Фиксация отдельных изменений кошелька; хранилища в памяти могут их игнорировать
+    default void appendTransaction(String username, Transaction transaction) {}
+    // Пачка транзакций (импорт); хранилище может зафиксировать ее одной записью
+    default void appendTransactions(
+        String username,
+        List<Transaction> transactions
+    ) {
+        for (Transaction transaction : transactions) {
+            appendTransaction(username, transaction);
+        }
+    }
+
+    // Перевод: расход отправителя и доход получателя. Хранилище, которое это умеет,
+    // фиксирует обе стороны вместе - одной записью журнала или одной транзакцией СУБД
+    default void appendTransfer(
+        String sender,
+        Transaction debit,
+        String recipient,
+        Transaction credit
+    ) {
+        appendTransaction(sender, debit);
+        appendTransaction(recipient, credit);
+    }
+
+    default void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {}
+
+    // Новый хеш пароля пользователя (перехеширование при входе)
+    default void updatePassword(String username, String passwordHash) {}
+
+    // Отчет за период и суммы по категориям, посчитанные самим хранилищем без загрузки
+    // кошелька; null - хранилище так не умеет, итоги берутся из кошелька
+    default PeriodReport queryReport(
+        String username,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        return null;
+    }
+
+    default Map<String, BigDecimal> queryCategoryTotals(
+        String username,
+        TransactionType type
+    ) {
+        return null;
+    }
+
+    // Страница истории транзакций, прочитанная самим хранилищем без загрузки кошелька;
+    // null - хранилище так не умеет, страница берется из кошелька
+    default TransactionPage queryHistory(String username, HistoryQuery query) {
+        return null;
+    }
+
+    // Сброс накопленных изменений в постоянное хранилище
+    default void flush() {}
+
+    // Завершение работы: сброс изменений и освобождение ресурсов
+    default void close() {
+        flush();
+    }
+}
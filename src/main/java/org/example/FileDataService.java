@@ -1,233 +1,777 @@
 package org.example;
 
 import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import java.io.*;
-import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-// Реализация сервиса данных с хранением в JSON файле
+// Реализация сервиса данных с хранением в JSON файле.
+// users.json - периодический снимок, все изменения между снимками дописываются в журнал.
+// Снимок создается без остановки записи: записи транзакций несут порядковый номер в кошельке,
+// поэтому попавшие и в снимок, и в хвост журнала транзакции при восстановлении не дублируются.
+// Записи журнала сериализуются в потоке запроса, а на диск попадают группами через
+// PersistenceScheduler: поток запроса не ждет ни записи, ни fsync, ни создания снимка.
+// Снимок заменяется атомарно и проверяется контрольной суммой (см. SnapshotFiles);
+// при повреждении используется предыдущий целый снимок, существующие файлы не затираются.
+// Часть журнала, свернутая в снимок, не удаляется, а переносится в сегмент
+// users.json.journal.<номер>; номер записан в футере снимка. Сегменты хранятся, пока
+// нужны самому старому из хранимых снимков, поэтому от предыдущего снимка
+// журнал проигрывается до того же состояния. Если ни одного пригодного снимка нет,
+// сервис не запускается: начать с пустых данных значило бы затем вытеснить старые файлы
 public class FileDataService implements DataService {
 
     private static final String FILE_PATH = "users.json";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    static final int DEFAULT_SYNC_EVERY = 64;
+    private static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+    private static final int DEFAULT_RETAINED_SNAPSHOTS = 2;
+    static final Duration DEFAULT_DURABILITY_WINDOW =
+        Duration.ofMillis(100);
+
+    private final SnapshotFiles snapshots;
+    // Gson с потоковыми адаптерами; его вывод компактный, поэтому годится и для журнала
     private final Gson gson;
+    private final TypeAdapter<User> userAdapter;
+    // Форматировать ли снимок с отступами
+    private final boolean prettyPrint;
+    private final Path journalPath;
+    private final WriteAheadJournal journal;
+    // Номер сегмента журнала для следующего снимка
+    private final AtomicLong nextSegment;
+    // После скольких записей журнал сворачивается в новый снимок
+    private final int compactThreshold;
+    // Снимок создает только один поток
+    private final AtomicBoolean compacting;
+    // Сериализованные записи, еще не переданные в журнал; пишутся фоновым потоком
+    private final List<String> pendingRecords;
+    private final PersistenceScheduler scheduler;
     private final Map<String, User> users;
+    private final Metrics metrics;
 
     public FileDataService() {
-        this.gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(
-                LocalDateTime.class,
-                new LocalDateTimeAdapter()
-            )
-            .registerTypeAdapter(Transaction.class, new TransactionAdapter())
-            .registerTypeAdapter(BigDecimal.class, new BigDecimalAdapter())
-            .registerTypeAdapter(Wallet.class, new WalletAdapter())
-            .create();
-        this.users = loadData();
-    }
-
-    // Сериализации
-    private static class LocalDateTimeAdapter
-        implements
-            JsonSerializer<LocalDateTime>, JsonDeserializer<LocalDateTime> {
-
-        private static final DateTimeFormatter formatter =
-            DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-
-        @Override
-        public JsonElement serialize(
-            LocalDateTime src,
-            Type typeOfSrc,
-            JsonSerializationContext context
-        ) {
-            return new JsonPrimitive(formatter.format(src));
+        this(Paths.get(FILE_PATH));
+    }
+
+    public FileDataService(Path filePath) {
+        this(filePath, DEFAULT_SYNC_EVERY, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    public FileDataService(Path filePath, int syncEvery, int compactThreshold) {
+        this(filePath, syncEvery, compactThreshold, true);
+    }
+
+    public FileDataService(
+        Path filePath,
+        int syncEvery,
+        int compactThreshold,
+        boolean prettyPrint
+    ) {
+        this(
+            filePath,
+            syncEvery,
+            compactThreshold,
+            prettyPrint,
+            DEFAULT_DURABILITY_WINDOW
+        );
+    }
+
+    public FileDataService(
+        Path filePath,
+        int syncEvery,
+        int compactThreshold,
+        boolean prettyPrint,
+        Duration durabilityWindow
+    ) {
+        this(
+            filePath,
+            syncEvery,
+            compactThreshold,
+            prettyPrint,
+            durabilityWindow,
+            DEFAULT_RETAINED_SNAPSHOTS
+        );
+    }
+
+    // syncEvery - после скольких изменений сбрасывать журнал, не дожидаясь окна;
+    // durabilityWindow - максимальная задержка записи изменения на диск (0 - сразу, синхронно);
+    // retainedSnapshots - сколько предыдущих снимков хранить для восстановления
+    public FileDataService(
+        Path filePath,
+        int syncEvery,
+        int compactThreshold,
+        boolean prettyPrint,
+        Duration durabilityWindow,
+        int retainedSnapshots
+    ) {
+        this.snapshots = new SnapshotFiles(filePath, retainedSnapshots);
+        this.compactThreshold = compactThreshold;
+        this.prettyPrint = prettyPrint;
+        this.gson = JsonAdapters.createGson();
+        this.userAdapter = gson.getAdapter(User.class);
+        this.metrics = new Metrics(MetricsRegistry.getDefault());
+        this.journalPath = Paths.get(filePath + JOURNAL_SUFFIX);
+        this.nextSegment = new AtomicLong(0);
+        try {
+            this.journal = new WriteAheadJournal(journalPath, syncEvery);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal", e);
         }
+        this.compacting = new AtomicBoolean(false);
+        this.pendingRecords = new ArrayList<>();
+        this.users = new ConcurrentHashMap<>(loadData());
+        this.scheduler = new PersistenceScheduler(
+            this::writePending,
+            syncEvery,
+            durabilityWindow
+        );
+        compactIfNeeded();
+    }
+
+    // Типы записей журнала
+    private enum JournalOperation {
+        ADD_USER,
+        REMOVE_USER,
+        TRANSACTION,
+        TRANSACTIONS,
+        BUDGET,
+        PASSWORD,
+        TRANSFER
+    }
+
+    // Запись журнала; заполняются только поля, нужные для конкретной операции
+    private static class JournalRecord {
+
+        private JournalOperation op;
+        private String username;
+        private User user;
+        private Transaction transaction;
+        private List<Transaction> transactions;
+        // Номер (первой) транзакции в кошельке (1, 2, ...); 0 - неизвестен
+        private int sequence;
+        private String category;
+        private BigDecimal amount;
+        private String password;
+        // Вторая сторона перевода: получатель, его транзакция и ее номер в его кошельке
+        private String recipient;
+        private Transaction credit;
+        private int creditSequence;
 
-        @Override
-        public LocalDateTime deserialize(
-            JsonElement json,
-            Type typeOfT,
-            JsonDeserializationContext context
-        ) throws JsonParseException {
-            return LocalDateTime.parse(json.getAsString(), formatter);
+        private JournalRecord(JournalOperation op, String username) {
+            this.op = op;
+            this.username = username;
         }
     }
 
-    private static class BigDecimalAdapter
-        implements JsonSerializer<BigDecimal>, JsonDeserializer<BigDecimal> {
+    // Метрики снимков и журнала: время файлового ввода-вывода и сериализации Gson
+    // (остаток времени операции), объем и число записанных пользователей и транзакций.
+    // Полное время saveData/loadData считает InstrumentedDataService
+    private static final class Metrics {
 
-        @Override
-        public JsonElement serialize(
-            BigDecimal src,
-            Type typeOfSrc,
-            JsonSerializationContext context
-        ) {
-            return new JsonPrimitive(src);
+        private final LatencyHistogram saveIo;
+        private final LatencyHistogram saveGson;
+        private final LongAdder saveErrors;
+        private final LongAdder bytesWritten;
+        private final LongAdder usersWritten;
+        private final LongAdder transactionsWritten;
+        private final LatencyHistogram loadIo;
+        private final LatencyHistogram loadGson;
+        private final LongAdder bytesRead;
+        private final LongAdder usersRead;
+        private final LatencyHistogram journalWrite;
+        private final LongAdder journalRecords;
+
+        private Metrics(MetricsRegistry registry) {
+            this.saveIo = registry.timer("data.snapshot.write.io");
+            this.saveGson = registry.timer("data.snapshot.write.gson");
+            this.saveErrors = registry.counter("data.snapshot.write.errors");
+            this.bytesWritten = registry.counter("data.snapshot.write.bytes");
+            this.usersWritten = registry.counter("data.snapshot.write.users");
+            this.transactionsWritten = registry.counter(
+                "data.snapshot.write.transactions"
+            );
+            this.loadIo = registry.timer("data.snapshot.read.io");
+            this.loadGson = registry.timer("data.snapshot.read.gson");
+            this.bytesRead = registry.counter("data.snapshot.read.bytes");
+            this.usersRead = registry.counter("data.snapshot.read.users");
+            this.journalWrite = registry.timer("data.journal.write");
+            this.journalRecords = registry.counter("data.journal.records");
         }
+    }
 
-        @Override
-        public BigDecimal deserialize(
-            JsonElement json,
-            Type typeOfT,
-            JsonDeserializationContext context
-        ) throws JsonParseException {
-            return new BigDecimal(json.getAsString());
+    // Сохранение снимка данных в файл; журнал до начала снимка после этого
+    // переносится в сегмент с номером снимка
+    @Override
+    public void saveData(Map<String, User> users) {
+        long segment = nextSegment.getAndIncrement();
+        long mark;
+        try {
+            mark = journal.mark();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+            return;
+        }
+        if (!writeSnapshot(users, segment)) {
+            return;
+        }
+        try {
+            journal.archiveBefore(mark, segmentPath(segment));
+        } catch (IOException e) {
+            System.err.println("Error truncating journal: " + e.getMessage());
+            return;
+        }
+        try {
+            pruneSegments();
+        } catch (IOException e) {
+            System.err.println(
+                "Error removing journal segments: " + e.getMessage()
+            );
         }
     }
 
-    private static class TransactionAdapter
-        implements JsonSerializer<Transaction>, JsonDeserializer<Transaction> {
+    private Path segmentPath(long segment) {
+        return Paths.get(journalPath + "." + segment);
+    }
 
-        @Override
-        public JsonElement serialize(
-            Transaction src,
-            Type typeOfSrc,
-            JsonSerializationContext context
+    // Сегменты журнала на диске по возрастанию номера
+    private NavigableMap<Long, Path> segments() {
+        NavigableMap<Long, Path> segments = new TreeMap<>();
+        String prefix = journalPath.getFileName() + ".";
+        try (
+            DirectoryStream<Path> files = Files.newDirectoryStream(
+                journalPath.toAbsolutePath().getParent(),
+                file -> file.getFileName().toString().startsWith(prefix)
+            )
         ) {
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.add("amount", context.serialize(src.getAmount()));
-            jsonObject.addProperty("category", src.getCategory());
-            jsonObject.add("dateTime", context.serialize(src.getDateTime()));
-            jsonObject.addProperty("type", src.getType().name());
-            return jsonObject;
-        }
-
-        @Override
-        public Transaction deserialize(
-            JsonElement json,
-            Type typeOfT,
-            JsonDeserializationContext context
-        ) throws JsonParseException {
-            JsonObject jsonObject = json.getAsJsonObject();
-            BigDecimal amount = context.deserialize(
-                jsonObject.get("amount"),
-                BigDecimal.class
-            );
-            String category = jsonObject.get("category").getAsString();
-            TransactionType type = TransactionType.valueOf(
-                jsonObject.get("type").getAsString()
+            for (Path file : files) {
+                String number = file
+                    .getFileName()
+                    .toString()
+                    .substring(prefix.length());
+                if (
+                    !number.isEmpty() &&
+                    number.chars().allMatch(Character::isDigit)
+                ) {
+                    segments.put(Long.parseLong(number), file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(
+                "Error listing journal segments: " + e.getMessage()
             );
+        }
+        return segments;
+    }
 
-            return new Transaction(amount, category, type);
+    // Удаление сегментов, которые уже вошли во все хранимые снимки
+    private void pruneSegments() throws IOException {
+        long oldest = snapshots
+            .segments()
+            .stream()
+            .mapToLong(Long::longValue)
+            .min()
+            .orElse(SnapshotFiles.NO_SEGMENT);
+        for (Path file : segments().headMap(oldest, true).values()) {
+            Files.deleteIfExists(file);
         }
     }
 
-    private static class WalletAdapter
-        implements JsonSerializer<Wallet>, JsonDeserializer<Wallet> {
+    // Потоковая запись снимка: пользователи пишутся по одному, без промежуточного дерева
+    private boolean writeSnapshot(Map<String, User> users, long segment) {
+        long start = System.nanoTime();
+        SnapshotFiles.IoStats io = new SnapshotFiles.IoStats();
+        long[] transactions = new long[1];
+        try {
+            snapshots.write(
+                out -> {
+                    JsonWriter writer = gson.newJsonWriter(out);
+                    if (prettyPrint) {
+                        writer.setIndent("  ");
+                    }
+                    writer.beginObject();
+                    for (Map.Entry<String, User> entry : users.entrySet()) {
+                        writer.name(entry.getKey());
+                        userAdapter.write(writer, entry.getValue());
+                        transactions[0] +=
+                            entry.getValue().getWallet().getTransactionCount();
+                    }
+                    writer.endObject();
+                    writer.flush();
+                },
+                segment,
+                io
+            );
+        } catch (IOException e) {
+            metrics.saveErrors.increment();
+            System.err.println("Error saving data: " + e.getMessage());
+            return false;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.saveIo.record(io.nanos);
+            metrics.saveGson.record(elapsed - io.nanos);
+        }
+        metrics.bytesWritten.add(io.bytes);
+        metrics.usersWritten.add(users.size());
+        metrics.transactionsWritten.add(transactions[0]);
+        return true;
+    }
 
-        @Override
-        public JsonElement serialize(
-            Wallet src,
-            Type typeOfSrc,
-            JsonSerializationContext context
-        ) {
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.add("balance", context.serialize(src.getBalance()));
-            jsonObject.add(
-                "transactions",
-                context.serialize(src.getTransactions())
+    // Загрузка последнего снимка и применение к нему следующих за ним сегментов
+    // и хвоста журнала
+    @Override
+    public Map<String, User> loadData() {
+        NavigableMap<Long, Path> segments = segments();
+        long last = segments.isEmpty()
+            ? SnapshotFiles.NO_SEGMENT
+            : segments.lastKey();
+        for (long segment : snapshots.segments()) {
+            last = Math.max(last, segment);
+        }
+        nextSegment.accumulateAndGet(last + 1, Math::max);
+
+        if (!snapshots.exists() && segments.isEmpty()) {
+            Map<String, User> emptyMap = new HashMap<>();
+            writeSnapshot(emptyMap, nextSegment.getAndIncrement());
+            return emptyMap;
+        }
+        SnapshotFiles.Recovered<Map<String, User>> snapshot = readSnapshot();
+        Map<String, User> loadedUsers = snapshot.data;
+        if (snapshot.segment != SnapshotFiles.NO_SEGMENT) {
+            for (Path file : segments
+                .tailMap(snapshot.segment, false)
+                .values()) {
+                try {
+                    replay(loadedUsers, WriteAheadJournal.readArchive(file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(
+                        "Cannot read journal segment " + file,
+                        e
+                    );
+                }
+            }
+        } else if (!snapshots.isCurrent(snapshot.file)) {
+            // Снимок старого формата: неизвестно, какая часть журнала после него удалена
+            throw new IllegalStateException(
+                "Snapshot " +
+                snapshot.file +
+                " has no journal segment, changes made after it cannot be " +
+                "restored; refusing to start"
             );
-            jsonObject.add("budgets", context.serialize(src.getBudgets()));
-            return jsonObject;
-        }
-
-        @Override
-        public Wallet deserialize(
-            JsonElement json,
-            Type typeOfT,
-            JsonDeserializationContext context
-        ) throws JsonParseException {
-            JsonObject jsonObject = json.getAsJsonObject();
-
-            Wallet wallet = new Wallet();
-
-            // Восстанавливаем транзакции
-            Type transactionListType = new TypeToken<
-                List<Transaction>
-            >() {}.getType();
-            List<Transaction> transactions = context.deserialize(
-                jsonObject.get("transactions"),
-                transactionListType
+        }
+        replayJournal(loadedUsers);
+        return loadedUsers;
+    }
+
+    // Загрузка самого свежего целого снимка за один проход потоковым парсером.
+    // Если ни одного целого снимка нет, запуск прерывается: поврежденные файлы
+    // отложены (см. SnapshotFiles) и восстанавливаются вручную
+    private SnapshotFiles.Recovered<Map<String, User>> readSnapshot() {
+        long start = System.nanoTime();
+        SnapshotFiles.IoStats io = new SnapshotFiles.IoStats();
+        SnapshotFiles.Recovered<Map<String, User>> snapshot =
+            snapshots.readNewest(this::readUsers, io);
+        long elapsed = System.nanoTime() - start;
+        metrics.loadIo.record(io.nanos);
+        metrics.loadGson.record(elapsed - io.nanos);
+        metrics.bytesRead.add(io.bytes);
+        if (snapshot == null) {
+            throw new IllegalStateException(
+                "No intact snapshot found, damaged files were kept; " +
+                "refusing to start"
             );
-            if (transactions != null) {
-                for (Transaction transaction : transactions) {
-                    wallet.addTransaction(transaction);
-                }
+        }
+        metrics.usersRead.add(snapshot.data.size());
+        return snapshot;
+    }
+
+    private Map<String, User> readUsers(Reader in) throws IOException {
+        JsonReader reader = gson.newJsonReader(in);
+        Map<String, User> loadedUsers = new HashMap<>();
+        if (isEmptyDocument(reader)) {
+            return loadedUsers;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String username = reader.nextName();
+            loadedUsers.put(username, userAdapter.read(reader));
+        }
+        reader.endObject();
+        return loadedUsers;
+    }
+
+    // Файл без единого JSON-токена (пустой или из одних пробелов)
+    private static boolean isEmptyDocument(JsonReader reader)
+        throws IOException {
+        try {
+            reader.peek();
+            return false;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    // Применение журнала поверх загруженного снимка
+    private void replayJournal(Map<String, User> users) {
+        List<String> records;
+        try {
+            records = journal.readRecords();
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+            return;
+        }
+        replay(users, records);
+    }
+
+    private void replay(Map<String, User> users, List<String> records) {
+        for (String line : records) {
+            try {
+                applyRecord(
+                    users,
+                    gson.fromJson(line, JournalRecord.class)
+                );
+            } catch (JsonParseException e) {
+                System.err.println(
+                    "Skipping damaged journal record: " + e.getMessage()
+                );
             }
+        }
+    }
 
-            // Восстанавливаем бюджеты
-            Type budgetMapType = new TypeToken<
-                Map<String, BigDecimal>
-            >() {}.getType();
-            Map<String, BigDecimal> budgets = context.deserialize(
-                jsonObject.get("budgets"),
-                budgetMapType
+    private static void applyRecord(
+        Map<String, User> users,
+        JournalRecord record
+    ) {
+        switch (record.op) {
+            case ADD_USER -> users.putIfAbsent(record.username, record.user);
+            case REMOVE_USER -> users.remove(record.username);
+            case TRANSACTION -> applyTransaction(
+                users,
+                record.username,
+                record.transaction,
+                record.sequence
             );
-            if (budgets != null) {
-                for (Map.Entry<String, BigDecimal> entry : budgets.entrySet()) {
-                    wallet.setBudget(entry.getKey(), entry.getValue());
+            case TRANSFER -> {
+                applyTransaction(
+                    users,
+                    record.username,
+                    record.transaction,
+                    record.sequence
+                );
+                applyTransaction(
+                    users,
+                    record.recipient,
+                    record.credit,
+                    record.creditSequence
+                );
+            }
+            case TRANSACTIONS -> {
+                User user = users.get(record.username);
+                if (user == null) {
+                    return;
+                }
+                // Часть пачки могла попасть в снимок; применяется только остаток
+                int skip = record.sequence == 0
+                    ? 0
+                    : user.getWallet().getTransactionCount() -
+                    record.sequence +
+                    1;
+                List<Transaction> transactions = record.transactions;
+                if (skip <= 0) {
+                    user.getWallet().addTransactions(transactions);
+                } else if (skip < transactions.size()) {
+                    user
+                        .getWallet()
+                        .addTransactions(
+                            transactions.subList(skip, transactions.size())
+                        );
+                }
+            }
+            case BUDGET -> {
+                User user = users.get(record.username);
+                if (user != null) {
+                    user.getWallet().setBudget(record.category, record.amount);
                 }
             }
+            case PASSWORD -> {
+                User user = users.get(record.username);
+                if (user != null) {
+                    user.setPassword(record.password);
+                }
+            }
+        }
+    }
 
-            return wallet;
+    // Транзакция могла попасть и в снимок, если он создавался после нее
+    private static void applyTransaction(
+        Map<String, User> users,
+        String username,
+        Transaction transaction,
+        int sequence
+    ) {
+        User user = users.get(username);
+        if (
+            user != null &&
+            (sequence == 0 ||
+                user.getWallet().getTransactionCount() < sequence)
+        ) {
+            user.getWallet().addTransaction(transaction);
         }
     }
 
-    // Сохранение данных в файл
-    @Override
-    public void saveData(Map<String, User> users) {
-        try (Writer writer = Files.newBufferedWriter(Paths.get(FILE_PATH))) {
-            gson.toJson(users, writer);
-        } catch (IOException e) {
-            System.err.println("Error saving data: " + e.getMessage());
+    // Запись сериализуется сразу, чтобы зафиксировать состояние на момент изменения
+    private void appendRecord(JournalRecord record) {
+        String line = gson.toJson(record);
+        synchronized (pendingRecords) {
+            pendingRecords.add(line);
         }
+        scheduler.recordChange();
     }
 
-    // Загрузка данных из файла
-    @Override
-    public Map<String, User> loadData() {
-        try {
-            if (!Files.exists(Paths.get(FILE_PATH))) {
-                Map<String, User> emptyMap = new HashMap<>();
-                saveData(emptyMap);
-                return emptyMap;
+    // Групповая фиксация: все накопленные записи одной записью в журнал и один fsync
+    private synchronized void writePending() {
+        List<String> batch;
+        synchronized (pendingRecords) {
+            batch = new ArrayList<>(pendingRecords);
+            pendingRecords.clear();
+        }
+        if (!batch.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                journal.appendAll(batch);
+                metrics.journalRecords.add(batch.size());
+            } catch (IOException e) {
+                System.err.println("Error writing journal: " + e.getMessage());
+                // Записи остаются в очереди до следующей попытки
+                synchronized (pendingRecords) {
+                    pendingRecords.addAll(0, batch);
+                }
+                return;
+            } finally {
+                metrics.journalWrite.recordSince(start);
             }
+        }
+        compactIfNeeded();
+    }
 
-            String content = Files.readString(Paths.get(FILE_PATH)).trim();
-            if (content.isEmpty()) {
-                Map<String, User> emptyMap = new HashMap<>();
-                saveData(emptyMap);
-                return emptyMap;
+    // Сворачивание журнала в новый снимок по достижении порога
+    private void compactIfNeeded() {
+        if (
+            journal.getRecordCount() >= compactThreshold &&
+            compacting.compareAndSet(false, true)
+        ) {
+            try {
+                compact();
+            } finally {
+                compacting.set(false);
             }
+        }
+    }
 
-            try (
-                Reader reader = Files.newBufferedReader(Paths.get(FILE_PATH))
-            ) {
-                Type type = new TypeToken<Map<String, User>>() {}.getType();
-                Map<String, User> loadedUsers = gson.fromJson(reader, type);
-                return loadedUsers != null ? loadedUsers : new HashMap<>();
+    public void compact() {
+        saveData(users);
+    }
+
+    // Есть ли изменения, еще не свернутые в снимок (в очереди или в журнале)
+    boolean hasUnsavedChanges() {
+        synchronized (pendingRecords) {
+            if (!pendingRecords.isEmpty()) {
+                return true;
             }
+        }
+        return journal.getRecordCount() > 0;
+    }
+
+    @Override
+    public void appendTransaction(String username, Transaction transaction) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.TRANSACTION,
+            username
+        );
+        record.transaction = transaction;
+        // Вызывается под блокировкой кошелька, поэтому номер совпадает с только что добавленной
+        User user = users.get(username);
+        if (user != null) {
+            record.sequence = user.getWallet().getTransactionCount();
+        }
+        appendRecord(record);
+    }
+
+    // Вся пачка - одна запись журнала и один fsync
+    @Override
+    public void appendTransactions(
+        String username,
+        List<Transaction> transactions
+    ) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.TRANSACTIONS,
+            username
+        );
+        record.transactions = transactions;
+        // Вызывается под блокировкой кошелька сразу после добавления пачки
+        User user = users.get(username);
+        if (user != null) {
+            record.sequence =
+                user.getWallet().getTransactionCount() -
+                transactions.size() +
+                1;
+        }
+        appendRecord(record);
+    }
+
+    // Обе стороны перевода - одна запись журнала: после сбоя восстанавливаются
+    // либо обе, либо ни одной
+    @Override
+    public void appendTransfer(
+        String sender,
+        Transaction debit,
+        String recipient,
+        Transaction credit
+    ) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.TRANSFER,
+            sender
+        );
+        record.transaction = debit;
+        record.recipient = recipient;
+        record.credit = credit;
+        // Вызывается под блокировками обоих кошельков сразу после добавления транзакций
+        record.sequence = sequenceOf(sender);
+        record.creditSequence = sequenceOf(recipient);
+        appendRecord(record);
+    }
+
+    // Запись перевода для общего журнала переводов между сегментами
+    // (см. ShardedFileDataService): номера транзакций сторон передаются снаружи,
+    // потому что стороны хранятся в разных сегментах
+    String transferRecord(
+        String sender,
+        Transaction debit,
+        int sequence,
+        String recipient,
+        Transaction credit,
+        int creditSequence
+    ) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.TRANSFER,
+            sender
+        );
+        record.transaction = debit;
+        record.sequence = sequence;
+        record.recipient = recipient;
+        record.credit = credit;
+        record.creditSequence = creditSequence;
+        return gson.toJson(record);
+    }
+
+    // Постановка готовой записи в очередь без планирования сброса; сброс - при flush
+    // или следующем scheduleFlush
+    void stageRecord(String line) {
+        synchronized (pendingRecords) {
+            pendingRecords.add(line);
+        }
+    }
+
+    void scheduleFlush() {
+        scheduler.recordChange();
+    }
+
+    // Применение записей общего журнала переводов после загрузки; стороны, уже
+    // попавшие в снимок или журнал, и чужие пользователи пропускаются.
+    // true - хотя бы одна сторона применена и еще не сохранена в этом хранилище
+    boolean replayTransfers(List<String> records) {
+        boolean applied = false;
+        for (String line : records) {
+            JournalRecord record;
+            try {
+                record = gson.fromJson(line, JournalRecord.class);
+            } catch (JsonParseException e) {
+                System.err.println(
+                    "Skipping damaged transfer record: " + e.getMessage()
+                );
+                continue;
+            }
+            int before =
+                sequenceOf(record.username) + sequenceOf(record.recipient);
+            applyRecord(users, record);
+            applied |=
+                sequenceOf(record.username) + sequenceOf(record.recipient) !=
+                before;
+        }
+        return applied;
+    }
+
+    // Номер последней транзакции кошелька; 0 - пользователя в этом хранилище нет
+    int sequenceOf(String username) {
+        User user = users.get(username);
+        return user != null ? user.getWallet().getTransactionCount() : 0;
+    }
+
+    @Override
+    public void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.BUDGET,
+            username
+        );
+        record.category = category;
+        record.amount = amount;
+        appendRecord(record);
+    }
+
+    @Override
+    public void updatePassword(String username, String passwordHash) {
+        JournalRecord record = new JournalRecord(
+            JournalOperation.PASSWORD,
+            username
+        );
+        record.password = passwordHash;
+        appendRecord(record);
+    }
+
+    // Сброс всех изменений на диск; возвращается после fsync
+    @Override
+    public void flush() {
+        scheduler.flush();
+    }
+
+    // Завершение работы: финальный сброс, остановка фонового потока и закрытие журнала
+    @Override
+    public void close() {
+        scheduler.close();
+        try {
+            journal.close();
         } catch (IOException e) {
-            System.err.println("Error loading data: " + e.getMessage());
-            return new HashMap<>();
-        } catch (JsonSyntaxException e) {
-            System.err.println("Error parsing JSON data: " + e.getMessage());
-            Map<String, User> emptyMap = new HashMap<>();
-            saveData(emptyMap);
-            return emptyMap;
+            System.err.println("Error closing journal: " + e.getMessage());
         }
     }
 
     // Операции с пользователями
     public void addUser(User user) {
         users.put(user.getUsername(), user);
-        saveData(users);
+        JournalRecord record = new JournalRecord(
+            JournalOperation.ADD_USER,
+            user.getUsername()
+        );
+        record.user = user;
+        appendRecord(record);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return new ArrayList<>(users.values());
     }
 
     public User getUser(String username) {
@@ -240,6 +784,6 @@ public class FileDataService implements DataService {
 
     public void removeUser(String username) {
         users.remove(username);
-        saveData(users);
+        appendRecord(new JournalRecord(JournalOperation.REMOVE_USER, username));
     }
 }
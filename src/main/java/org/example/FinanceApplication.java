@@ -1,31 +1,195 @@
 package org.example;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 // Точка входа в приложение
 public class FinanceApplication {
 
-    private final ConsoleReader consoleReader;
+    // Переменная окружения с токеном оператора для /api/admin/report
+    public static final String ADMIN_TOKEN_VARIABLE = "FINANCE_ADMIN_TOKEN";
+
+    private static final String STORAGE_OPTION = "--storage=";
+    private static final String DEFAULT_STORAGE = "file";
+    // Каталог сегментов ShardedFileDataService
+    private static final String SHARDS_DIRECTORY = "users-shards";
+
     private final AuthenticationService authService;
     private final FinancialOperationService financialService;
-    private final FileDataService dataService;
+    private final DataService dataService;
+    private final BudgetEventBus budgetEvents;
+    private final AdminAnalyticsService adminAnalytics;
 
     public FinanceApplication() {
-        this.dataService = new FileDataService();
-        this.authService = new AuthenticationServiceImpl(dataService);
-        this.financialService = new FinancialOperationServiceImpl(authService);
-        this.consoleReader = new ConsoleReader(
+        this(new FileDataService());
+    }
+
+    public FinanceApplication(DataService storage) {
+        // Метрики задержек доступны через JMX (org.example:type=Metrics)
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.registerMBean();
+        this.dataService = new InstrumentedDataService(storage, metrics);
+        this.budgetEvents = new BudgetEventBus();
+        this.authService = new InstrumentedAuthenticationService(
+            new AuthenticationServiceImpl(dataService),
+            metrics
+        );
+        this.financialService = new InstrumentedFinancialOperationService(
+            new FinancialOperationServiceImpl(
+                authService,
+                dataService,
+                new BudgetMonitor(budgetEvents)
+            ),
+            metrics
+        );
+        this.adminAnalytics = new AdminAnalyticsService(dataService);
+    }
+
+    // Стартуем
+    public void run() {
+        ConsoleReader consoleReader = new ConsoleReader(
             authService,
             financialService,
             dataService
         );
+        budgetEvents.subscribe(consoleReader::showBudgetAlert);
+        try {
+            consoleReader.start();
+        } finally {
+            budgetEvents.close();
+        }
     }
 
-    // Стартуем
-    public void run() {
-        consoleReader.start();
+    // Режим HTTP API; работает до завершения процесса, данные сохраняются при остановке
+    public void serve(int port) throws IOException {
+        budgetEvents.subscribe(event ->
+            System.out.println(
+                "[Budget alert] " + event.getUsername() + ": " + event
+            )
+        );
+        FinanceHttpServer server = new FinanceHttpServer(
+            authService,
+            financialService,
+            port
+        );
+        String adminToken = System.getenv(ADMIN_TOKEN_VARIABLE);
+        if (adminToken != null && !adminToken.isBlank()) {
+            server.enableAdminReports(adminAnalytics, adminToken);
+        }
+        Runtime.getRuntime().addShutdownHook(
+            new Thread(
+                () -> {
+                    server.close();
+                    dataService.close();
+                    budgetEvents.close();
+                },
+                "shutdown"
+            )
+        );
+        server.start();
+        System.out.println("Listening on " + server.getAddress());
     }
 
-    public static void main(String[] args) {
-        FinanceApplication app = new FinanceApplication();
-        app.run();
+    // Сводный отчет оператора по всем пользователям в консоль
+    public void printAdminReport(int topSpenders) {
+        try {
+            AdminReport report = adminAnalytics.buildReport(topSpenders);
+            System.out.println("=== Admin Report ===");
+            System.out.println("Users: " + report.getUserCount());
+            System.out.println("Total income: " + report.getTotalIncome());
+            System.out.println("Total expenses: " + report.getTotalExpenses());
+            System.out.println("Income by category:");
+            report
+                .getIncomesByCategory()
+                .forEach((category, amount) ->
+                    System.out.println(category + ": " + amount)
+                );
+            System.out.println("Expenses by category:");
+            report
+                .getExpensesByCategory()
+                .forEach((category, amount) ->
+                    System.out.println(category + ": " + amount)
+                );
+            System.out.println("Top spenders:");
+            report
+                .getTopSpenders()
+                .forEach(spender -> System.out.println("  " + spender));
+            System.out.println("Budget overruns: " + report.getOverrunCount());
+            report
+                .getBudgetOverruns()
+                .forEach(overrun -> System.out.println("  " + overrun));
+        } finally {
+            dataService.close();
+            budgetEvents.close();
+        }
+    }
+
+    // Хранилище по имени из --storage
+    static DataService createDataService(String storage) {
+        return switch (storage) {
+            case "file" -> new FileDataService();
+            case "binary" -> new BinaryDataService();
+            case "sharded" -> new ShardedFileDataService(
+                Paths.get(SHARDS_DIRECTORY)
+            );
+            case "jdbc" -> new JdbcDataService();
+            default -> throw new IllegalArgumentException(
+                "Unknown storage " +
+                storage +
+                ", expected file, binary, sharded or jdbc"
+            );
+        };
+    }
+
+    // Без аргументов - консоль; --server [порт] - HTTP API;
+    // --admin-report [число] - сводный отчет оператора и выход;
+    // --convert to-binary|to-json <источник> <назначение> - перевод users.json
+    // в users.bin или обратно и выход, хранилище приложения не открывается;
+    // --storage=file|binary|sharded|jdbc - хранилище (по умолчанию file)
+    public static void main(String[] rawArgs) throws IOException {
+        String storage = DEFAULT_STORAGE;
+        List<String> options = new ArrayList<>();
+        for (String arg : rawArgs) {
+            if (arg.startsWith(STORAGE_OPTION)) {
+                storage = arg.substring(STORAGE_OPTION.length());
+            } else {
+                options.add(arg);
+            }
+        }
+        String[] args = options.toArray(new String[0]);
+        if (args.length > 0 && args[0].equals("--convert")) {
+            if (args.length != 4) {
+                System.err.println(
+                    "Usage: --convert to-binary|to-json <source> <target>"
+                );
+                System.exit(1);
+            }
+            BinaryFormatConverter.convert(
+                args[1],
+                Paths.get(args[2]),
+                Paths.get(args[3])
+            );
+            return;
+        }
+        FinanceApplication app = new FinanceApplication(
+            createDataService(storage)
+        );
+        if (args.length > 0 && args[0].equals("--server")) {
+            app.serve(
+                args.length > 1
+                    ? Integer.parseInt(args[1])
+                    : FinanceHttpServer.DEFAULT_PORT
+            );
+        } else if (args.length > 0 && args[0].equals("--admin-report")) {
+            app.printAdminReport(
+                args.length > 1
+                    ? Integer.parseInt(args[1])
+                    : AdminAnalyticsService.DEFAULT_TOP_SPENDERS
+            );
+        } else {
+            app.run();
+        }
     }
 }
@@ -0,0 +1,544 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HTTP/JSON API поверх тех же сервисов, что и консоль, на встроенном в JDK HttpServer.
+// Клиент получает токен сессии при входе и передает его в заголовке
+// "Authorization: Bearer <токен>"; на время запроса сессия привязывается к потоку
+// обработчика (AuthenticationService.bindSession).
+// Соединения принимает один поток-диспетчер HttpServer, обработчики выполняются
+// в executor: на Java 21+ - по виртуальному потоку на запрос, на более ранних версиях -
+// фиксированный пул. Обработчики не ждут ввода-вывода (хеширование паролей идет
+// на своем пуле), поэтому открытые соединения потоков не занимают.
+//
+// POST /api/register   {"username", "password"}
+// POST /api/login      {"username", "password"} -> {"token"}
+// POST /api/logout
+// POST /api/income     {"amount", "category"}
+// POST /api/expense    {"amount", "category"}
+// POST /api/transfer   {"recipient", "amount", "category"}
+// GET  /api/budgets    -> {категория: лимит}
+// POST /api/budgets    {"category", "amount"}
+// GET  /api/balance    -> {"balance", "totalIncome", "totalExpenses"}
+// GET  /api/statistics -> {"incomes", "expenses", "budgets"}
+// GET  /api/transactions?limit=&order=newest|oldest&type=&category=&from=&to=&cursor=
+//                      -> {"transactions": [...], "nextCursor"}
+// GET  /api/admin/report?top= -> сводный отчет по всем пользователям (AdminReport);
+//                      только с токеном оператора, см. enableAdminReports
+public class FinanceHttpServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_BACKLOG = 4096;
+    // Размер пула, если виртуальных потоков нет
+    public static final int DEFAULT_POOL_THREADS = 200;
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final String BEARER = "Bearer ";
+
+    private final AuthenticationService authService;
+    private final FinancialOperationService financialService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson;
+    // Путь -> метод -> обработчик; один контекст HttpServer на путь
+    private final Map<String, Map<String, Handler>> routes;
+
+    // Обработчик маршрута; результат пишется в ответ как JSON
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(HttpExchange exchange) throws IOException;
+    }
+
+    // Ошибка запроса с HTTP-статусом
+    private static class HttpError extends RuntimeException {
+
+        private final int status;
+
+        private HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class Credentials {
+
+        private String username;
+        private String password;
+    }
+
+    private static class AmountRequest {
+
+        private BigDecimal amount;
+        private String category;
+    }
+
+    private static class TransferRequest {
+
+        private String recipient;
+        private BigDecimal amount;
+        private String category;
+    }
+
+    public FinanceHttpServer(
+        AuthenticationService authService,
+        FinancialOperationService financialService,
+        int port
+    ) throws IOException {
+        this(
+            authService,
+            financialService,
+            new InetSocketAddress(port),
+            createExecutor(DEFAULT_POOL_THREADS)
+        );
+    }
+
+    // executor закрывается вместе с сервером
+    public FinanceHttpServer(
+        AuthenticationService authService,
+        FinancialOperationService financialService,
+        InetSocketAddress address,
+        ExecutorService executor
+    ) throws IOException {
+        this.authService = authService;
+        this.financialService = financialService;
+        this.executor = executor;
+        this.gson = new Gson();
+        this.routes = new LinkedHashMap<>();
+        this.server = HttpServer.create(address, DEFAULT_BACKLOG);
+        server.setExecutor(executor);
+
+        route("/api/register", "POST", false, this::register);
+        route("/api/login", "POST", false, this::login);
+        route("/api/logout", "POST", true, this::logout);
+        route("/api/income", "POST", true, this::addIncome);
+        route("/api/expense", "POST", true, this::addExpense);
+        route("/api/transfer", "POST", true, this::transfer);
+        route("/api/budgets", "GET", true, exchange ->
+            financialService.getBudgetsByCategory()
+        );
+        route("/api/budgets", "POST", true, this::setBudget);
+        route("/api/balance", "GET", true, exchange -> balance());
+        route("/api/statistics", "GET", true, exchange -> statistics());
+        route("/api/transactions", "GET", true, this::transactions);
+    }
+
+    // Сводные отчеты оператора. Токен оператора не связан с сессиями пользователей
+    // и передается так же, в заголовке Authorization; вызывается до start()
+    public void enableAdminReports(
+        AdminAnalyticsService analytics,
+        String adminToken
+    ) {
+        if (adminToken == null || adminToken.isBlank()) {
+            throw new IllegalArgumentException("adminToken must not be empty");
+        }
+        byte[] expected = adminToken.getBytes(StandardCharsets.UTF_8);
+        route("/api/admin/report", "GET", false, exchange -> {
+            byte[] actual = token(exchange).getBytes(StandardCharsets.UTF_8);
+            // Сравнение за постоянное время: токен не подбирается по задержке ответа
+            if (!MessageDigest.isEqual(expected, actual)) {
+                throw new HttpError(403, "Operator token required");
+            }
+            String top = parameters(exchange).get("top");
+            int topSpenders;
+            try {
+                topSpenders = top == null
+                    ? AdminAnalyticsService.DEFAULT_TOP_SPENDERS
+                    : Integer.parseInt(top);
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Top must be a number");
+            }
+            return adminReport(analytics.buildReport(topSpenders));
+        });
+    }
+
+    // Виртуальный поток на запрос, если среда выполнения их поддерживает (Java 21+);
+    // иначе фиксированный пул из poolThreads потоков-демонов
+    public static ExecutorService createExecutor(int poolThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor"
+            ).invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(poolThreads, runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "http-worker-" + threadNumber.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // Остановка: новые соединения не принимаются, начатые запросы дорабатывают
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(
+        String path,
+        String method,
+        boolean authenticated,
+        Handler handler
+    ) {
+        Map<String, Handler> methods = routes.get(path);
+        if (methods == null) {
+            Map<String, Handler> created = new LinkedHashMap<>();
+            routes.put(path, created);
+            server.createContext(path, exchange -> dispatch(exchange, created));
+            methods = created;
+        }
+        methods.put(
+            method,
+            authenticated ? exchange -> withSession(exchange, handler) : handler
+        );
+    }
+
+    private void dispatch(HttpExchange exchange, Map<String, Handler> methods)
+        throws IOException {
+        try {
+            Handler handler = methods.get(exchange.getRequestMethod());
+            if (handler == null) {
+                exchange
+                    .getResponseHeaders()
+                    .set("Allow", String.join(", ", methods.keySet()));
+                throw new HttpError(405, "Method not allowed");
+            }
+            Object result;
+            try {
+                result = handler.handle(exchange);
+            } catch (AuthenticationException e) {
+                throw new HttpError(401, e.getMessage());
+            } catch (FinancialOperationException e) {
+                throw new HttpError(422, e.getMessage());
+            } catch (JsonParseException | NumberFormatException e) {
+                throw new HttpError(400, "Malformed request body");
+            } catch (ArithmeticException e) {
+                // Сумма вне диапазона или с лишними знаками (см. Money)
+                throw new HttpError(
+                    400,
+                    e.getMessage() != null
+                        ? e.getMessage()
+                        : "Amount out of range"
+                );
+            } catch (DateTimeParseException e) {
+                throw new HttpError(
+                    400,
+                    "Malformed date: " + e.getParsedString()
+                );
+            } catch (StorageException e) {
+                throw new HttpError(503, "Storage unavailable");
+            }
+            send(exchange, 200, result != null ? result : Map.of());
+        } catch (HttpError e) {
+            send(exchange, e.status, Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            System.err.println(
+                "Error handling " + exchange.getRequestURI() + ": " + e
+            );
+            send(exchange, 500, Map.of("error", "Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Привязка сессии из заголовка к потоку на время запроса
+    private Object withSession(HttpExchange exchange, Handler handler)
+        throws IOException {
+        authService.bindSession(token(exchange));
+        try {
+            return handler.handle(exchange);
+        } finally {
+            authService.unbindSession();
+        }
+    }
+
+    private Object register(HttpExchange exchange) throws IOException {
+        Credentials credentials = body(exchange, Credentials.class);
+        try {
+            authService.register(credentials.username, credentials.password);
+        } catch (AuthenticationException e) {
+            // Имя занято или данные не прошли проверку - это не ошибка входа
+            throw new HttpError(400, e.getMessage());
+        }
+        return null;
+    }
+
+    private Object login(HttpExchange exchange) throws IOException {
+        Credentials credentials = body(exchange, Credentials.class);
+        return Map.of(
+            "token",
+            authService.openSession(credentials.username, credentials.password)
+        );
+    }
+
+    private Object logout(HttpExchange exchange) {
+        authService.closeSession(token(exchange));
+        return null;
+    }
+
+    private Object addIncome(HttpExchange exchange) throws IOException {
+        AmountRequest request = body(exchange, AmountRequest.class);
+        financialService.addIncome(request.amount, request.category);
+        return null;
+    }
+
+    private Object addExpense(HttpExchange exchange) throws IOException {
+        AmountRequest request = body(exchange, AmountRequest.class);
+        financialService.addExpense(request.amount, request.category);
+        return null;
+    }
+
+    private Object transfer(HttpExchange exchange) throws IOException {
+        TransferRequest request = body(exchange, TransferRequest.class);
+        financialService.transfer(
+            request.recipient,
+            request.amount,
+            request.category
+        );
+        return null;
+    }
+
+    private Object setBudget(HttpExchange exchange) throws IOException {
+        AmountRequest request = body(exchange, AmountRequest.class);
+        financialService.setBudget(request.category, request.amount);
+        return null;
+    }
+
+    private Map<String, BigDecimal> balance() {
+        Map<String, BigDecimal> result = new LinkedHashMap<>();
+        result.put("balance", financialService.getCurrentBalance());
+        result.put("totalIncome", financialService.getTotalIncome());
+        result.put("totalExpenses", financialService.getTotalExpenses());
+        return result;
+    }
+
+    private Map<String, Map<String, BigDecimal>> statistics() {
+        Map<String, Map<String, BigDecimal>> result = new LinkedHashMap<>();
+        result.put("incomes", financialService.getIncomesByCategory());
+        result.put("expenses", financialService.getExpensesByCategory());
+        result.put("budgets", financialService.getBudgetsByCategory());
+        return result;
+    }
+
+    // Страница истории; время - ISO-8601 без зоны (2024-01-31T10:15:30)
+    private Map<String, Object> transactions(HttpExchange exchange) {
+        Map<String, String> parameters = parameters(exchange);
+        String order = parameters.getOrDefault("order", "newest");
+        if (!order.equals("newest") && !order.equals("oldest")) {
+            throw new HttpError(400, "Order must be newest or oldest");
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(parameters.getOrDefault("limit", "50"));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Limit must be a number");
+        }
+        HistoryQuery query = new HistoryQuery(limit, order.equals("newest"))
+            .category(parameters.get("category"))
+            .after(parameters.get("cursor"));
+        String type = parameters.get("type");
+        if (type != null) {
+            try {
+                query.type(
+                    TransactionType.valueOf(type.toUpperCase(Locale.ROOT))
+                );
+            } catch (IllegalArgumentException e) {
+                throw new HttpError(400, "Unknown transaction type: " + type);
+            }
+        }
+        if (parameters.containsKey("from")) {
+            query.from(LocalDateTime.parse(parameters.get("from")));
+        }
+        if (parameters.containsKey("to")) {
+            query.to(LocalDateTime.parse(parameters.get("to")));
+        }
+
+        TransactionPage page = financialService.getTransactionHistory(query);
+        // LocalDateTime отдается строкой: Gson не сериализует java.time сам
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        for (Transaction transaction : page.getTransactions()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put(
+                "type",
+                transaction.getType().name().toLowerCase(Locale.ROOT)
+            );
+            item.put("category", transaction.getCategory());
+            item.put("amount", transaction.getAmount());
+            item.put("dateTime", transaction.getDateTime().toString());
+            transactions.add(item);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("transactions", transactions);
+        result.put("nextCursor", page.getNextCursor());
+        return result;
+    }
+
+    private static Map<String, Object> adminReport(AdminReport report) {
+        List<Map<String, Object>> spenders = new ArrayList<>();
+        for (AdminReport.Spender spender : report.getTopSpenders()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("username", spender.getUsername());
+            item.put("totalExpenses", spender.getTotalExpenses());
+            spenders.add(item);
+        }
+        List<Map<String, Object>> overruns = new ArrayList<>();
+        for (AdminReport.BudgetOverrun overrun : report.getBudgetOverruns()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("username", overrun.getUsername());
+            item.put("category", overrun.getCategory());
+            item.put("budget", overrun.getBudget());
+            item.put("spent", overrun.getSpent());
+            overruns.add(item);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userCount", report.getUserCount());
+        result.put("totalIncome", report.getTotalIncome());
+        result.put("totalExpenses", report.getTotalExpenses());
+        result.put("incomesByCategory", report.getIncomesByCategory());
+        result.put("expensesByCategory", report.getExpensesByCategory());
+        result.put("topSpenders", spenders);
+        result.put("overrunCount", report.getOverrunCount());
+        result.put("budgetOverruns", overruns);
+        return result;
+    }
+
+    // Параметры строки запроса; повторный параметр заменяет предыдущий
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                parameters.put(
+                    URLDecoder.decode(
+                        pair.substring(0, separator),
+                        StandardCharsets.UTF_8
+                    ),
+                    URLDecoder.decode(
+                        pair.substring(separator + 1),
+                        StandardCharsets.UTF_8
+                    )
+                );
+            } catch (IllegalArgumentException e) {
+                throw new HttpError(400, "Malformed query string");
+            }
+        }
+        return parameters;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith(BEARER)) {
+            throw new HttpError(401, "Missing session token");
+        }
+        return header.substring(BEARER.length()).trim();
+    }
+
+    // Тело запроса длиннее MAX_BODY_BYTES отклоняется, не дочитываясь
+    private <T> T body(HttpExchange exchange, Class<T> type)
+        throws IOException {
+        try (
+            Reader reader = new InputStreamReader(
+                new LimitedInputStream(exchange.getRequestBody()),
+                StandardCharsets.UTF_8
+            )
+        ) {
+            T result = gson.fromJson(reader, type);
+            if (result == null) {
+                throw new HttpError(400, "Request body is empty");
+            }
+            return result;
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, Object body)
+        throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange
+            .getResponseHeaders()
+            .set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class LimitedInputStream extends InputStream {
+
+        private final InputStream in;
+        private int remaining = MAX_BODY_BYTES;
+
+        private LimitedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new HttpError(413, "Request body too large");
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+            throws IOException {
+            int n = in.read(bytes, offset, length);
+            if (n > 0 && (remaining -= n) < 0) {
+                throw new HttpError(413, "Request body too large");
+            }
+            return n;
+        }
+    }
+}
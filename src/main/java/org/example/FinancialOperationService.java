@@ -1,16 +1,35 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.Map;
 
 public interface FinancialOperationService {
     void addIncome(BigDecimal amount, String category);
     void addExpense(BigDecimal amount, String category);
     void setBudget(String category, BigDecimal amount);
+    // Перевод текущего пользователя другому: расход отправителя и доход получателя
+    void transfer(String recipient, BigDecimal amount, String category);
     Map<String, BigDecimal> getIncomesByCategory();
     Map<String, BigDecimal> getExpensesByCategory();
     Map<String, BigDecimal> getBudgetsByCategory();
     BigDecimal getTotalIncome();
     BigDecimal getTotalExpenses();
     BigDecimal getCurrentBalance();
+
+    // Отчеты за период [from, to) и помесячная/понедельная разбивка
+    PeriodReport getReport(LocalDateTime from, LocalDateTime to);
+    Map<YearMonth, PeriodReport> getMonthlyReports(YearMonth from, YearMonth to);
+    Map<LocalDate, PeriodReport> getWeeklyReports(LocalDate from, LocalDate to);
+
+    // Страница истории транзакций; следующая - тем же запросом с курсором этой страницы
+    TransactionPage getTransactionHistory(HistoryQuery query);
+
+    // Импорт транзакций из CSV (см. TransactionImporter)
+    ImportResult importTransactions(Reader csv, boolean parallel)
+        throws IOException;
 }
\ No newline at end of file
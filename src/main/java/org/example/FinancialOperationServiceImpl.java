@@ -1,114 +1,253 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
 
 // Реализация сервиса финансовых операций
 public class FinancialOperationServiceImpl
     implements FinancialOperationService {
 
     private final AuthenticationService authenticationService;
+    // сервис данных, в который фиксируются изменения кошельков
+    private final DataService dataService;
+    // Пороги бюджетов; события доставляются асинхронно и не задерживают addExpense
+    private final BudgetMonitor budgetMonitor;
 
     public FinancialOperationServiceImpl(
-        AuthenticationService authenticationService
+        AuthenticationService authenticationService,
+        DataService dataService
+    ) {
+        this(
+            authenticationService,
+            dataService,
+            new BudgetMonitor(new BudgetEventBus())
+        );
+    }
+
+    public FinancialOperationServiceImpl(
+        AuthenticationService authenticationService,
+        DataService dataService,
+        BudgetMonitor budgetMonitor
     ) {
         this.authenticationService = authenticationService;
+        this.dataService = dataService;
+        this.budgetMonitor = budgetMonitor;
+    }
+
+    public BudgetMonitor getBudgetMonitor() {
+        return budgetMonitor;
     }
 
     @Override
     public void addIncome(BigDecimal amount, String category) {
         validateAmount(amount);
-        validateCategory(category);
+        category = validateCategory(category);
 
         User currentUser = getCurrentUser();
+        Wallet wallet = currentUser.getWallet();
         Transaction transaction = new Transaction(
             amount,
             category,
             TransactionType.INCOME
         );
-        currentUser.getWallet().addTransaction(transaction);
+        wallet.getLock().writeLock().lock();
+        try {
+            record(currentUser, transaction);
+        } finally {
+            wallet.getLock().writeLock().unlock();
+        }
     }
 
-    // Добавление расхода
+    // Добавление расхода: проверка баланса и запись выполняются атомарно под блокировкой
+    // кошелька, поэтому параллельные расходы не могут увести баланс в минус.
+    // Бюджет расход не блокирует: о достижении порогов сообщает BudgetMonitor
     @Override
     public void addExpense(BigDecimal amount, String category) {
         validateAmount(amount);
-        validateCategory(category);
+        category = validateCategory(category);
 
         User currentUser = getCurrentUser();
+        Wallet wallet = currentUser.getWallet();
 
-        // Проверка достаточности средств
-        if (
-            currentUser
-                .getWallet()
-                .getBalance()
-                .subtract(amount)
-                .compareTo(BigDecimal.ZERO) <
-            0
-        ) {
-            throw new FinancialOperationException("Insufficient funds");
+        wallet.getLock().writeLock().lock();
+        try {
+            // Проверка достаточности средств
+            Money expense = Money.of(amount);
+            if (wallet.getBalanceMoney().compareTo(expense) < 0) {
+                throw new FinancialOperationException("Insufficient funds");
+            }
+
+            Budget budget = new Budget(
+                category,
+                wallet.getBudgetMoney(category),
+                wallet.getExpensesInCategoryMoney(category)
+            );
+
+            Transaction transaction = new Transaction(
+                amount,
+                category,
+                TransactionType.EXPENSE
+            );
+            record(currentUser, transaction);
+            budgetMonitor.onExpense(currentUser.getUsername(), budget, expense);
+        } finally {
+            wallet.getLock().writeLock().unlock();
         }
+    }
 
-        Transaction transaction = new Transaction(
-            amount,
-            category,
-            TransactionType.EXPENSE
-        );
-        currentUser.getWallet().addTransaction(transaction);
+    // Перевод выполняется под блокировками обоих кошельков: проверка баланса отправителя,
+    // обе транзакции и их запись в хранилище (одной записью, см. DataService.appendTransfer).
+    // Блокировки берутся в порядке имен пользователей, поэтому встречные переводы одной пары
+    // не взаимоблокируются, а переводы между разными парами не ждут друг друга.
+    // Бюджет отправителя, как и в addExpense, перевод не блокирует: пороги - через BudgetMonitor
+    @Override
+    public void transfer(String recipient, BigDecimal amount, String category) {
+        validateAmount(amount);
+        category = validateCategory(category);
 
-        checkBudgetLimit(category, amount);
+        User sender = getCurrentUser();
+        User receiver = recipient == null
+            ? null
+            : dataService.getUser(recipient);
+        if (receiver == null) {
+            throw new FinancialOperationException("Recipient not found");
+        }
+        if (receiver.getUsername().equals(sender.getUsername())) {
+            throw new FinancialOperationException(
+                "Cannot transfer to yourself"
+            );
+        }
+        Wallet from = sender.getWallet();
+        Wallet to = receiver.getWallet();
+        // Загрузка кошелька берет его блокировку; до упорядоченного захвата
+        from.ensureLoaded();
+        to.ensureLoaded();
+        boolean senderFirst =
+            sender.getUsername().compareTo(receiver.getUsername()) < 0;
+        Lock first = (senderFirst ? from : to).getLock().writeLock();
+        Lock second = (senderFirst ? to : from).getLock().writeLock();
+
+        first.lock();
+        try {
+            second.lock();
+            try {
+                Money money = Money.of(amount);
+                if (from.getBalanceMoney().compareTo(money) < 0) {
+                    throw new FinancialOperationException("Insufficient funds");
+                }
+                Budget budget = new Budget(
+                    category,
+                    from.getBudgetMoney(category),
+                    from.getExpensesInCategoryMoney(category)
+                );
+                LocalDateTime now = LocalDateTime.now();
+                Transaction debit = new Transaction(
+                    amount,
+                    category,
+                    TransactionType.EXPENSE,
+                    now
+                );
+                Transaction credit = new Transaction(
+                    amount,
+                    category,
+                    TransactionType.INCOME,
+                    now
+                );
+                // Обе проверки до изменений: перевод не выполняется наполовину
+                try {
+                    from.checkCapacity(debit);
+                    to.checkCapacity(credit);
+                } catch (ArithmeticException e) {
+                    throw new FinancialOperationException(
+                        "Wallet total overflow"
+                    );
+                }
+                from.addTransaction(debit);
+                to.addTransaction(credit);
+                dataService.appendTransfer(
+                    sender.getUsername(),
+                    debit,
+                    receiver.getUsername(),
+                    credit
+                );
+                budgetMonitor.onExpense(sender.getUsername(), budget, money);
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    // Добавление транзакции в кошелек и фиксация в хранилище; вызывается под блокировкой кошелька
+    private void record(User user, Transaction transaction) {
+        try {
+            user.getWallet().addTransaction(transaction);
+        } catch (ArithmeticException e) {
+            throw new FinancialOperationException("Wallet total overflow");
+        }
+        dataService.appendTransaction(user.getUsername(), transaction);
     }
 
     // Установка бюджета
     @Override
     public void setBudget(String category, BigDecimal amount) {
         validateAmount(amount);
-        validateCategory(category);
+        category = validateCategory(category);
 
         User currentUser = getCurrentUser();
-        currentUser.getWallet().setBudget(category, amount);
+        Wallet wallet = currentUser.getWallet();
+        wallet.getLock().writeLock().lock();
+        try {
+            wallet.setBudget(category, amount);
+            dataService.updateBudget(
+                currentUser.getUsername(),
+                category,
+                amount
+            );
+        } finally {
+            wallet.getLock().writeLock().unlock();
+        }
     }
 
     // Получение доходов по категориям
     @Override
     public Map<String, BigDecimal> getIncomesByCategory() {
-        return getCurrentUser()
-            .getWallet()
-            .getTransactions()
-            .stream()
-            .filter(t -> t.getType() == TransactionType.INCOME)
-            .collect(
-                Collectors.groupingBy(
-                    Transaction::getCategory,
-                    Collectors.reducing(
-                        BigDecimal.ZERO,
-                        Transaction::getAmount,
-                        BigDecimal::add
-                    )
-                )
-            );
+        User currentUser = getCurrentUser();
+        Map<String, BigDecimal> totals = dataService.queryCategoryTotals(
+            currentUser.getUsername(),
+            TransactionType.INCOME
+        );
+        return new HashMap<>(
+            totals != null
+                ? totals
+                : currentUser.getWallet().getIncomesByCategory()
+        );
     }
 
     // Получение расходов по категориям
     @Override
     public Map<String, BigDecimal> getExpensesByCategory() {
-        return getCurrentUser()
-            .getWallet()
-            .getTransactions()
-            .stream()
-            .filter(t -> t.getType() == TransactionType.EXPENSE)
-            .collect(
-                Collectors.groupingBy(
-                    Transaction::getCategory,
-                    Collectors.reducing(
-                        BigDecimal.ZERO,
-                        Transaction::getAmount,
-                        BigDecimal::add
-                    )
-                )
-            );
+        User currentUser = getCurrentUser();
+        Map<String, BigDecimal> totals = dataService.queryCategoryTotals(
+            currentUser.getUsername(),
+            TransactionType.EXPENSE
+        );
+        return new HashMap<>(
+            totals != null
+                ? totals
+                : currentUser.getWallet().getExpensesByCategory()
+        );
     }
 
     // Получение бюджетов по категориям
@@ -120,25 +259,13 @@ public class FinancialOperationServiceImpl
     // Получение общей суммы доходов
     @Override
     public BigDecimal getTotalIncome() {
-        return getCurrentUser()
-            .getWallet()
-            .getTransactions()
-            .stream()
-            .filter(t -> t.getType() == TransactionType.INCOME)
-            .map(Transaction::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return getCurrentUser().getWallet().getTotalIncome();
     }
 
     // Получение общей суммы расходов
     @Override
     public BigDecimal getTotalExpenses() {
-        return getCurrentUser()
-            .getWallet()
-            .getTransactions()
-            .stream()
-            .filter(t -> t.getType() == TransactionType.EXPENSE)
-            .map(Transaction::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return getCurrentUser().getWallet().getTotalExpenses();
     }
 
     // Получение текущего баланса
@@ -147,6 +274,136 @@ public class FinancialOperationServiceImpl
         return getCurrentUser().getWallet().getBalance();
     }
 
+    // Отчет за произвольный период [from, to)
+    @Override
+    public PeriodReport getReport(LocalDateTime from, LocalDateTime to) {
+        validatePeriod(from, to);
+        return report(getCurrentUser(), from, to);
+    }
+
+    // Отчет хранилища, если оно умеет считать его само, иначе - по дням кошелька
+    private PeriodReport report(
+        User user,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        PeriodReport report = dataService.queryReport(
+            user.getUsername(),
+            from,
+            to
+        );
+        return report != null ? report : user.getWallet().getReport(from, to);
+    }
+
+    // Отчеты по месяцам с from по to включительно
+    @Override
+    public Map<YearMonth, PeriodReport> getMonthlyReports(
+        YearMonth from,
+        YearMonth to
+    ) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new FinancialOperationException("Invalid period");
+        }
+        User user = getCurrentUser();
+        Map<YearMonth, PeriodReport> reports = new TreeMap<>();
+        for (
+            YearMonth month = from;
+            !month.isAfter(to);
+            month = month.plusMonths(1)
+        ) {
+            reports.put(
+                month,
+                report(
+                    user,
+                    month.atDay(1).atStartOfDay(),
+                    month.plusMonths(1).atDay(1).atStartOfDay()
+                )
+            );
+        }
+        return reports;
+    }
+
+    // Отчеты по неделям (с понедельника), пересекающимся с периодом [from, to)
+    @Override
+    public Map<LocalDate, PeriodReport> getWeeklyReports(
+        LocalDate from,
+        LocalDate to
+    ) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new FinancialOperationException("Invalid period");
+        }
+        User user = getCurrentUser();
+        Map<LocalDate, PeriodReport> reports = new TreeMap<>();
+        LocalDate weekStart = from.with(
+            TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)
+        );
+        for (; weekStart.isBefore(to); weekStart = weekStart.plusWeeks(1)) {
+            reports.put(
+                weekStart,
+                report(
+                    user,
+                    weekStart.atStartOfDay(),
+                    weekStart.plusWeeks(1).atStartOfDay()
+                )
+            );
+        }
+        return reports;
+    }
+
+    // История читается хранилищем, если оно это умеет (без загрузки кошелька), иначе -
+    // по дням кошелька. Курсор действителен для того же хранилища, что его выдало
+    @Override
+    public TransactionPage getTransactionHistory(HistoryQuery query) {
+        if (query == null) {
+            throw new FinancialOperationException("Query cannot be empty");
+        }
+        if (
+            query.getFrom() != null &&
+            query.getTo() != null &&
+            !query.getFrom().isBefore(query.getTo())
+        ) {
+            throw new FinancialOperationException("Invalid period");
+        }
+        User user = getCurrentUser();
+        TransactionPage page = dataService.queryHistory(
+            user.getUsername(),
+            query
+        );
+        return page != null ? page : user.getWallet().getHistory(query);
+    }
+
+    // Импорт выписки: строки уже разобраны и проверены импортером, каждая пачка
+    // добавляется в кошелек и фиксируется в хранилище целиком под одной блокировкой.
+    // Выписка описывает уже совершенные операции, поэтому баланс и бюджеты не проверяются
+    @Override
+    public ImportResult importTransactions(Reader csv, boolean parallel)
+        throws IOException {
+        User currentUser = getCurrentUser();
+        Wallet wallet = currentUser.getWallet();
+        TransactionImporter importer = new TransactionImporter(
+            TransactionImporter.DEFAULT_BATCH_SIZE,
+            parallel
+        );
+        return importer.importCsv(csv, batch -> {
+            wallet.getLock().writeLock().lock();
+            try {
+                try {
+                    wallet.addTransactions(batch);
+                } catch (ArithmeticException e) {
+                    throw new FinancialOperationException(
+                        "Wallet total overflow"
+                    );
+                }
+                dataService.appendTransactions(
+                    currentUser.getUsername(),
+                    batch
+                );
+            } finally {
+                wallet.getLock().writeLock().unlock();
+            }
+        });
+    }
+
     // Получение текущего авторизованного пользователя
     private User getCurrentUser() {
         if (!authenticationService.isAuthenticated()) {
@@ -155,30 +412,30 @@ public class FinancialOperationServiceImpl
         return authenticationService.getCurrentUser();
     }
 
+    // Суммы хранятся в копейках (Money), поэтому допускается не больше двух знаков после запятой
     private void validateAmount(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new FinancialOperationException("Amount must be positive");
         }
+        try {
+            Money.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            throw new FinancialOperationException(e.getMessage());
+        }
     }
 
-    private void validateCategory(String category) {
-        if (category == null || category.trim().isEmpty()) {
-            throw new FinancialOperationException("Category cannot be empty");
+    private void validatePeriod(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new FinancialOperationException("Invalid period");
         }
     }
 
-    // Проверка лимита бюджета
-    private void checkBudgetLimit(String category, BigDecimal amount) {
-        User currentUser = getCurrentUser();
-        BigDecimal budget = currentUser.getWallet().getBudget(category);
-        if (budget.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal totalExpensesInCategory = getExpensesByCategory()
-                .getOrDefault(category, BigDecimal.ZERO);
-            if (totalExpensesInCategory.compareTo(budget) > 0) {
-                throw new FinancialOperationException(
-                    "Budget limit exceeded for category: " + category
-                );
-            }
+    // Возвращает каноническое написание категории (см. Categories.lookup); новая категория
+    // регистрируется позже, вместе с транзакцией или бюджетом, а не при отклоненной операции
+    private String validateCategory(String category) {
+        if (category == null || category.trim().isEmpty()) {
+            throw new FinancialOperationException("Category cannot be empty");
         }
+        return Categories.lookup(category);
     }
 }
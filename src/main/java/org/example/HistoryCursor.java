@@ -0,0 +1,58 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Позиция в истории транзакций: время и номер последней выданной транзакции.
+// Номер - строка кошелька или id строки в СУБД; вместе со временем он задает
+// однозначный порядок, поэтому страница начинается сразу за курсором без сдвига
+// по смещению, а новые транзакции не сдвигают уже выданные страницы.
+// Клиенту передается непрозрачной строкой (base64url)
+final class HistoryCursor {
+
+    private final LocalDateTime dateTime;
+    private final long position;
+
+    HistoryCursor(LocalDateTime dateTime, long position) {
+        this.dateTime = dateTime;
+        this.position = position;
+    }
+
+    LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    String encode() {
+        return Base64
+            .getUrlEncoder()
+            .withoutPadding()
+            .encodeToString(
+                (dateTime + "|" + position).getBytes(StandardCharsets.UTF_8)
+            );
+    }
+
+    static HistoryCursor parse(String cursor) {
+        try {
+            String text = new String(
+                Base64.getUrlDecoder().decode(cursor),
+                StandardCharsets.UTF_8
+            );
+            int separator = text.indexOf('|');
+            if (separator < 0) {
+                throw new FinancialOperationException("Invalid cursor");
+            }
+            return new HistoryCursor(
+                LocalDateTime.parse(text.substring(0, separator)),
+                Long.parseLong(text.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new FinancialOperationException("Invalid cursor");
+        }
+    }
+}
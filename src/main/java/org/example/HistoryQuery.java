@@ -0,0 +1,89 @@
+package org.example;
+
+import java.time.LocalDateTime;
+
+// Запрос страницы истории транзакций: размер страницы, порядок и необязательные фильтры
+// по типу, категории и периоду [from, to). Следующая страница запрашивается тем же
+// запросом с курсором из предыдущей (after, см. TransactionPage.getNextCursor)
+public class HistoryQuery {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private final int limit;
+    private final boolean newestFirst;
+    private TransactionType type;
+    private String category;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private HistoryCursor cursor;
+
+    public HistoryQuery(int limit, boolean newestFirst) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new FinancialOperationException(
+                "Page size must be between 1 and " + MAX_LIMIT
+            );
+        }
+        this.limit = limit;
+        this.newestFirst = newestFirst;
+    }
+
+    public HistoryQuery type(TransactionType type) {
+        this.type = type;
+        return this;
+    }
+
+    // Категория сравнивается в каноническом написании (см. Categories.lookup);
+    // неизвестная категория в словарь не добавляется
+    public HistoryQuery category(String category) {
+        this.category = category == null
+            ? null
+            : Categories.lookup(category);
+        return this;
+    }
+
+    // Начало периода, включительно
+    public HistoryQuery from(LocalDateTime from) {
+        this.from = from;
+        return this;
+    }
+
+    // Конец периода, не включая
+    public HistoryQuery to(LocalDateTime to) {
+        this.to = to;
+        return this;
+    }
+
+    // Продолжение после курсора предыдущей страницы; null - с начала
+    public HistoryQuery after(String cursor) {
+        this.cursor = cursor == null ? null : HistoryCursor.parse(cursor);
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isNewestFirst() {
+        return newestFirst;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    HistoryCursor getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,70 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Итог импорта транзакций: число принятых строк и отклоненные строки с причиной
+public class ImportResult {
+
+    // Подробно сохраняются только первые отклоненные строки, остальные лишь считаются
+    static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private long importedCount;
+    private long rejectedCount;
+    private final List<RejectedRow> rejectedRows;
+
+    // Отклоненная строка файла
+    public static class RejectedRow {
+
+        private final long lineNumber;
+        private final String reason;
+
+        RejectedRow(long lineNumber, String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + reason;
+        }
+    }
+
+    ImportResult() {
+        this.importedCount = 0;
+        this.rejectedCount = 0;
+        this.rejectedRows = new ArrayList<>();
+    }
+
+    void addImported(int count) {
+        importedCount += count;
+    }
+
+    void addRejected(long lineNumber, String reason) {
+        rejectedCount++;
+        if (rejectedRows.size() < MAX_REPORTED_REJECTIONS) {
+            rejectedRows.add(new RejectedRow(lineNumber, reason));
+        }
+    }
+
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public List<RejectedRow> getRejectedRows() {
+        return Collections.unmodifiableList(rejectedRows);
+    }
+}
@@ -1,13 +1,16 @@
 package org.example;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class InMemoryDataService implements DataService {
     private final Map<String, User> users;
 
     public InMemoryDataService() {
-        this.users = new HashMap<>();
+        this.users = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -26,6 +29,11 @@ public class InMemoryDataService implements DataService {
         users.put(user.getUsername(), user);
     }
 
+    @Override
+    public Collection<User> getAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
     public User getUser(String username) {
         return users.get(username);
     }
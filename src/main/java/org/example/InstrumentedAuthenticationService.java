@@ -0,0 +1,68 @@
+package org.example;
+
+// Декоратор сервиса аутентификации: задержка и число ошибок регистрации и входа
+// (auth.register, auth.login, auth.openSession)
+public class InstrumentedAuthenticationService implements AuthenticationService {
+
+    private final AuthenticationService delegate;
+    private final TimedOperation register;
+    private final TimedOperation login;
+    private final TimedOperation openSession;
+
+    public InstrumentedAuthenticationService(
+        AuthenticationService delegate,
+        MetricsRegistry registry
+    ) {
+        this.delegate = delegate;
+        this.register = new TimedOperation(registry, "auth.register");
+        this.login = new TimedOperation(registry, "auth.login");
+        this.openSession = new TimedOperation(registry, "auth.openSession");
+    }
+
+    @Override
+    public void register(String username, String password) {
+        register.run(() -> delegate.register(username, password));
+    }
+
+    @Override
+    public boolean login(String username, String password) {
+        return login.call(() -> delegate.login(username, password));
+    }
+
+    @Override
+    public void logout() {
+        delegate.logout();
+    }
+
+    @Override
+    public User getCurrentUser() {
+        return delegate.getCurrentUser();
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return delegate.isAuthenticated();
+    }
+
+    @Override
+    public String openSession(String username, String password) {
+        return openSession.call(() ->
+            delegate.openSession(username, password)
+        );
+    }
+
+    @Override
+    public void closeSession(String token) {
+        delegate.closeSession(token);
+    }
+
+    @Override
+    public void bindSession(String token) {
+        delegate.bindSession(token);
+    }
+
+    @Override
+    public void unbindSession() {
+        delegate.unbindSession();
+    }
+}
@@ -0,0 +1,129 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Декоратор хранилища: задержка и число ошибок saveData/loadData (data.saveData,
+// data.loadData); остальные методы, включая методы по умолчанию, передаются как есть
+public class InstrumentedDataService implements DataService {
+
+    private final DataService delegate;
+    private final TimedOperation saveData;
+    private final TimedOperation loadData;
+
+    public InstrumentedDataService(
+        DataService delegate,
+        MetricsRegistry registry
+    ) {
+        this.delegate = delegate;
+        this.saveData = new TimedOperation(registry, "data.saveData");
+        this.loadData = new TimedOperation(registry, "data.loadData");
+    }
+
+    @Override
+    public void saveData(Map<String, User> users) {
+        saveData.run(() -> delegate.saveData(users));
+    }
+
+    @Override
+    public Map<String, User> loadData() {
+        return loadData.call(delegate::loadData);
+    }
+
+    @Override
+    public void addUser(User user) {
+        delegate.addUser(user);
+    }
+
+    @Override
+    public User getUser(String username) {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return delegate.userExists(username);
+    }
+
+    @Override
+    public void removeUser(String username) {
+        delegate.removeUser(username);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public void appendTransaction(String username, Transaction transaction) {
+        delegate.appendTransaction(username, transaction);
+    }
+
+    @Override
+    public void appendTransactions(
+        String username,
+        List<Transaction> transactions
+    ) {
+        delegate.appendTransactions(username, transactions);
+    }
+
+    @Override
+    public void appendTransfer(
+        String sender,
+        Transaction debit,
+        String recipient,
+        Transaction credit
+    ) {
+        delegate.appendTransfer(sender, debit, recipient, credit);
+    }
+
+    @Override
+    public void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {
+        delegate.updateBudget(username, category, amount);
+    }
+
+    @Override
+    public void updatePassword(String username, String passwordHash) {
+        delegate.updatePassword(username, passwordHash);
+    }
+
+    @Override
+    public PeriodReport queryReport(
+        String username,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        return delegate.queryReport(username, from, to);
+    }
+
+    @Override
+    public Map<String, BigDecimal> queryCategoryTotals(
+        String username,
+        TransactionType type
+    ) {
+        return delegate.queryCategoryTotals(username, type);
+    }
+
+    @Override
+    public TransactionPage queryHistory(String username, HistoryQuery query) {
+        return delegate.queryHistory(username, query);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
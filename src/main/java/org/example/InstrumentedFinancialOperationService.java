@@ -0,0 +1,180 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+
+// Декоратор сервиса финансовых операций: задержка и число ошибок каждого метода
+// (метрики finance.<метод> в реестре)
+public class InstrumentedFinancialOperationService
+    implements FinancialOperationService {
+
+    private final FinancialOperationService delegate;
+    private final TimedOperation addIncome;
+    private final TimedOperation addExpense;
+    private final TimedOperation setBudget;
+    private final TimedOperation transfer;
+    private final TimedOperation getIncomesByCategory;
+    private final TimedOperation getExpensesByCategory;
+    private final TimedOperation getBudgetsByCategory;
+    private final TimedOperation getTotalIncome;
+    private final TimedOperation getTotalExpenses;
+    private final TimedOperation getCurrentBalance;
+    private final TimedOperation getReport;
+    private final TimedOperation getMonthlyReports;
+    private final TimedOperation getWeeklyReports;
+    private final TimedOperation getTransactionHistory;
+    private final TimedOperation importTransactions;
+
+    public InstrumentedFinancialOperationService(
+        FinancialOperationService delegate,
+        MetricsRegistry registry
+    ) {
+        this.delegate = delegate;
+        this.addIncome = new TimedOperation(registry, "finance.addIncome");
+        this.addExpense = new TimedOperation(registry, "finance.addExpense");
+        this.setBudget = new TimedOperation(registry, "finance.setBudget");
+        this.transfer = new TimedOperation(registry, "finance.transfer");
+        this.getIncomesByCategory = new TimedOperation(
+            registry,
+            "finance.getIncomesByCategory"
+        );
+        this.getExpensesByCategory = new TimedOperation(
+            registry,
+            "finance.getExpensesByCategory"
+        );
+        this.getBudgetsByCategory = new TimedOperation(
+            registry,
+            "finance.getBudgetsByCategory"
+        );
+        this.getTotalIncome = new TimedOperation(
+            registry,
+            "finance.getTotalIncome"
+        );
+        this.getTotalExpenses = new TimedOperation(
+            registry,
+            "finance.getTotalExpenses"
+        );
+        this.getCurrentBalance = new TimedOperation(
+            registry,
+            "finance.getCurrentBalance"
+        );
+        this.getReport = new TimedOperation(registry, "finance.getReport");
+        this.getMonthlyReports = new TimedOperation(
+            registry,
+            "finance.getMonthlyReports"
+        );
+        this.getWeeklyReports = new TimedOperation(
+            registry,
+            "finance.getWeeklyReports"
+        );
+        this.getTransactionHistory = new TimedOperation(
+            registry,
+            "finance.getTransactionHistory"
+        );
+        this.importTransactions = new TimedOperation(
+            registry,
+            "finance.importTransactions"
+        );
+    }
+
+    @Override
+    public void addIncome(BigDecimal amount, String category) {
+        addIncome.run(() -> delegate.addIncome(amount, category));
+    }
+
+    @Override
+    public void addExpense(BigDecimal amount, String category) {
+        addExpense.run(() -> delegate.addExpense(amount, category));
+    }
+
+    @Override
+    public void setBudget(String category, BigDecimal amount) {
+        setBudget.run(() -> delegate.setBudget(category, amount));
+    }
+
+    @Override
+    public void transfer(String recipient, BigDecimal amount, String category) {
+        transfer.run(() -> delegate.transfer(recipient, amount, category));
+    }
+
+    @Override
+    public Map<String, BigDecimal> getIncomesByCategory() {
+        return getIncomesByCategory.call(delegate::getIncomesByCategory);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getExpensesByCategory() {
+        return getExpensesByCategory.call(delegate::getExpensesByCategory);
+    }
+
+    @Override
+    public Map<String, BigDecimal> getBudgetsByCategory() {
+        return getBudgetsByCategory.call(delegate::getBudgetsByCategory);
+    }
+
+    @Override
+    public BigDecimal getTotalIncome() {
+        return getTotalIncome.call(delegate::getTotalIncome);
+    }
+
+    @Override
+    public BigDecimal getTotalExpenses() {
+        return getTotalExpenses.call(delegate::getTotalExpenses);
+    }
+
+    @Override
+    public BigDecimal getCurrentBalance() {
+        return getCurrentBalance.call(delegate::getCurrentBalance);
+    }
+
+    @Override
+    public PeriodReport getReport(LocalDateTime from, LocalDateTime to) {
+        return getReport.call(() -> delegate.getReport(from, to));
+    }
+
+    @Override
+    public Map<YearMonth, PeriodReport> getMonthlyReports(
+        YearMonth from,
+        YearMonth to
+    ) {
+        return getMonthlyReports.call(() ->
+            delegate.getMonthlyReports(from, to)
+        );
+    }
+
+    @Override
+    public Map<LocalDate, PeriodReport> getWeeklyReports(
+        LocalDate from,
+        LocalDate to
+    ) {
+        return getWeeklyReports.call(() ->
+            delegate.getWeeklyReports(from, to)
+        );
+    }
+
+    @Override
+    public TransactionPage getTransactionHistory(HistoryQuery query) {
+        return getTransactionHistory.call(() ->
+            delegate.getTransactionHistory(query)
+        );
+    }
+
+    @Override
+    public ImportResult importTransactions(Reader csv, boolean parallel)
+        throws IOException {
+        long start = importTransactions.start();
+        boolean failed = true;
+        try {
+            ImportResult result = delegate.importTransactions(csv, parallel);
+            failed = false;
+            return result;
+        } finally {
+            importTransactions.finish(start, failed);
+        }
+    }
+}
@@ -0,0 +1,690 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Реализация сервиса данных во встроенной файловой СУБД через JDBC (по умолчанию H2).
+// Таблицы нормализованы: users, transactions, budgets; суммы хранятся в копейках (см. Money).
+// Каждое изменение кошелька - отдельная вставка или обновление строки, пачки транзакций
+// пишутся пакетом prepared statement в одной транзакции СУБД. Кошелек пользователя читается
+// из таблиц только при первом обращении к нему; отчеты и суммы по категориям считаются
+// запросами с группировкой, а страницы истории - запросом по ключу (время, id), не загружая
+// кошелек (см. queryReport, queryCategoryTotals, queryHistory).
+// Все обращения к соединению синхронизированы на сервисе; кошельки читаются до взятия
+// монитора, поэтому сервис никогда не ждет блокировку кошелька, удерживая монитор.
+// Ошибка записи не только выводится: затронутые кошельки перечитываются из базы
+// (изменение в памяти отменяется), а вызывающий код получает StorageException
+public class JdbcDataService implements DataService {
+
+    private static final String DEFAULT_PATH = "finance-db";
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS users (" +
+        " username VARCHAR(255) PRIMARY KEY," +
+        " password VARCHAR(255) NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS transactions (" +
+        " id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+        " username VARCHAR(255) NOT NULL" +
+        "  REFERENCES users (username) ON DELETE CASCADE," +
+        " type TINYINT NOT NULL," +
+        " category VARCHAR(255) NOT NULL," +
+        " category_key VARCHAR(255)," +
+        " amount BIGINT NOT NULL," +
+        " occurred_at TIMESTAMP(9) NOT NULL)",
+        // Ключ сравнения категории: написание, сохраненное в другом запуске
+        // ("food" и "Food"), попадает в ту же группу. Базы, созданные до
+        // появления столбца, дополняются им здесь же; сохраненные имена уже
+        // нормализованы по пробелам, поэтому достаточно LOWER
+        "ALTER TABLE transactions" +
+        " ADD COLUMN IF NOT EXISTS category_key VARCHAR(255)",
+        "UPDATE transactions SET category_key = LOWER(category)" +
+        " WHERE category_key IS NULL",
+        "DROP INDEX IF EXISTS transactions_user_category_time",
+        "CREATE INDEX IF NOT EXISTS transactions_user_category_key_time" +
+        " ON transactions (username, category_key, occurred_at)",
+        "CREATE INDEX IF NOT EXISTS transactions_user_time" +
+        " ON transactions (username, occurred_at)",
+        "CREATE TABLE IF NOT EXISTS budgets (" +
+        " username VARCHAR(255) NOT NULL" +
+        "  REFERENCES users (username) ON DELETE CASCADE," +
+        " category VARCHAR(255) NOT NULL," +
+        " amount BIGINT NOT NULL," +
+        " PRIMARY KEY (username, category))",
+    };
+
+    private static final String INSERT_TRANSACTION =
+        "INSERT INTO transactions" +
+        " (username, type, category, category_key, amount, occurred_at)" +
+        " VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String MERGE_BUDGET =
+        "MERGE INTO budgets (username, category, amount)" +
+        " KEY (username, category) VALUES (?, ?, ?)";
+    // Бюджет той же категории, сохраненный под другим написанием
+    private static final String DELETE_BUDGET_SPELLINGS =
+        "DELETE FROM budgets" +
+        " WHERE username = ? AND LOWER(category) = ? AND category <> ?";
+
+    private final Connection connection;
+    // Выданные наружу пользователи: getUser возвращает один и тот же объект
+    private final Map<String, User> users;
+
+    public JdbcDataService() {
+        this(Paths.get(DEFAULT_PATH));
+    }
+
+    // Файл базы H2 (расширение .mv.db добавляет сама СУБД)
+    public JdbcDataService(Path path) {
+        this("jdbc:h2:file:" + path.toAbsolutePath());
+    }
+
+    public JdbcDataService(String jdbcUrl) {
+        try {
+            this.connection = DriverManager.getConnection(jdbcUrl);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(
+                "Cannot open database: " + e.getMessage(),
+                e
+            );
+        }
+        this.users = new ConcurrentHashMap<>();
+    }
+
+    // Полная замена содержимого базы переданными пользователями, одной транзакцией
+    @Override
+    public void saveData(Map<String, User> newUsers) {
+        List<UserRows> rows = new ArrayList<>();
+        for (User user : newUsers.values()) {
+            rows.add(new UserRows(user));
+        }
+        synchronized (this) {
+            try {
+                inTransaction(() -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("DELETE FROM users");
+                    }
+                    for (UserRows userRows : rows) {
+                        insertUser(userRows);
+                    }
+                });
+                users.clear();
+                users.putAll(newUsers);
+            } catch (SQLException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+            }
+        }
+    }
+
+    // Все пользователи; кошельки загрузятся при первом обращении
+    @Override
+    public synchronized Map<String, User> loadData() {
+        Map<String, User> result = new HashMap<>();
+        try (
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(
+                "SELECT username, password FROM users"
+            )
+        ) {
+            while (resultSet.next()) {
+                String username = resultSet.getString(1);
+                User user = users.get(username);
+                if (user == null) {
+                    user = lazyUser(username, resultSet.getString(2));
+                    users.put(username, user);
+                }
+                result.put(username, user);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading data: " + e.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public void addUser(User user) {
+        UserRows rows = new UserRows(user);
+        write("Error adding user", () -> {
+            inTransaction(() -> insertUser(rows));
+            users.put(user.getUsername(), user);
+        });
+    }
+
+    @Override
+    public synchronized User getUser(String username) {
+        User user = users.get(username);
+        if (user != null) {
+            return user;
+        }
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT password FROM users WHERE username = ?"
+            )
+        ) {
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                user = lazyUser(username, resultSet.getString(1));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading user: " + e.getMessage());
+            return null;
+        }
+        users.put(username, user);
+        return user;
+    }
+
+    @Override
+    public synchronized boolean userExists(String username) {
+        if (users.containsKey(username)) {
+            return true;
+        }
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM users WHERE username = ?"
+            )
+        ) {
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading user: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void removeUser(String username) {
+        write("Error removing user", () -> {
+            try (
+                PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM users WHERE username = ?"
+                )
+            ) {
+                statement.setString(1, username);
+                statement.executeUpdate();
+            }
+            users.remove(username);
+        });
+    }
+
+    @Override
+    public void appendTransaction(String username, Transaction transaction) {
+        write(
+            "Error writing transaction",
+            () -> {
+                try (
+                    PreparedStatement statement = connection.prepareStatement(
+                        INSERT_TRANSACTION
+                    )
+                ) {
+                    bindTransaction(statement, username, transaction);
+                    statement.executeUpdate();
+                }
+            },
+            username
+        );
+    }
+
+    // Пачка - один пакет вставок в одной транзакции СУБД
+    @Override
+    public void appendTransactions(
+        String username,
+        List<Transaction> transactions
+    ) {
+        write(
+            "Error writing transactions",
+            () ->
+                inTransaction(() -> insertTransactions(username, transactions)),
+            username
+        );
+    }
+
+    // Обе стороны перевода - одна транзакция СУБД
+    @Override
+    public void appendTransfer(
+        String sender,
+        Transaction debit,
+        String recipient,
+        Transaction credit
+    ) {
+        write(
+            "Error writing transfer",
+            () ->
+                inTransaction(() -> {
+                    insertTransactions(sender, List.of(debit));
+                    insertTransactions(recipient, List.of(credit));
+                }),
+            sender,
+            recipient
+        );
+    }
+
+    @Override
+    public void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {
+        write(
+            "Error writing budget",
+            () ->
+                inTransaction(() -> {
+                    try (
+                        PreparedStatement statement =
+                            connection.prepareStatement(DELETE_BUDGET_SPELLINGS)
+                    ) {
+                        statement.setString(1, username);
+                        statement.setString(2, Categories.key(category));
+                        statement.setString(3, category);
+                        statement.executeUpdate();
+                    }
+                    try (
+                        PreparedStatement statement =
+                            connection.prepareStatement(MERGE_BUDGET)
+                    ) {
+                        statement.setString(1, username);
+                        statement.setString(2, category);
+                        statement.setLong(
+                            3,
+                            Money.toMinorUnitsRounded(amount)
+                        );
+                        statement.executeUpdate();
+                    }
+                }),
+            username
+        );
+    }
+
+    @Override
+    public synchronized void updatePassword(
+        String username,
+        String passwordHash
+    ) {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "UPDATE users SET password = ? WHERE username = ?"
+            )
+        ) {
+            statement.setString(1, passwordHash);
+            statement.setString(2, username);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Error writing password: " + e.getMessage());
+        }
+    }
+
+    // Отчет за период [from, to) одним запросом с группировкой по типу и категории
+    @Override
+    public synchronized PeriodReport queryReport(
+        String username,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        PeriodReport report = new PeriodReport(from, to);
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT type, MIN(category), SUM(amount) FROM transactions" +
+                " WHERE username = ? AND occurred_at >= ? AND occurred_at < ?" +
+                " GROUP BY type, category_key"
+            )
+        ) {
+            statement.setString(1, username);
+            statement.setObject(2, from);
+            statement.setObject(3, to);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                TransactionType[] types = TransactionType.values();
+                while (resultSet.next()) {
+                    report.add(
+                        types[resultSet.getInt(1)],
+                        Categories.normalize(resultSet.getString(2)),
+                        resultSet.getLong(3)
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying report: " + e.getMessage());
+            return null;
+        }
+        return report;
+    }
+
+    // Суммы по категориям за все время
+    @Override
+    public synchronized Map<String, BigDecimal> queryCategoryTotals(
+        String username,
+        TransactionType type
+    ) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT MIN(category), SUM(amount) FROM transactions" +
+                " WHERE username = ? AND type = ? GROUP BY category_key"
+            )
+        ) {
+            statement.setString(1, username);
+            statement.setInt(2, type.ordinal());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    totals.merge(
+                        Categories.normalize(resultSet.getString(1)),
+                        Money.toBigDecimal(resultSet.getLong(2)),
+                        BigDecimal::add
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying totals: " + e.getMessage());
+            return null;
+        }
+        return totals;
+    }
+
+    // Страница истории по ключу (occurred_at, id): индекс (username, occurred_at)
+    // или (username, category_key, occurred_at) ведет сразу к позиции курсора, читается
+    // не больше limit + 1 строк, сколько бы транзакций ни было до нее
+    @Override
+    public synchronized TransactionPage queryHistory(
+        String username,
+        HistoryQuery query
+    ) {
+        boolean newestFirst = query.isNewestFirst();
+        String order = newestFirst ? " DESC" : " ASC";
+        String after = newestFirst ? " < ?" : " > ?";
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, type, category, amount, occurred_at FROM transactions" +
+            " WHERE username = ?"
+        );
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(username);
+        if (query.getType() != null) {
+            sql.append(" AND type = ?");
+            parameters.add(query.getType().ordinal());
+        }
+        if (query.getCategory() != null) {
+            sql.append(" AND category_key = ?");
+            parameters.add(Categories.key(query.getCategory()));
+        }
+        if (query.getFrom() != null) {
+            sql.append(" AND occurred_at >= ?");
+            parameters.add(query.getFrom());
+        }
+        if (query.getTo() != null) {
+            sql.append(" AND occurred_at < ?");
+            parameters.add(query.getTo());
+        }
+        HistoryCursor cursor = query.getCursor();
+        if (cursor != null) {
+            // Первое условие - диапазон по индексу, второе отсекает строки курсора
+            sql
+                .append(" AND occurred_at")
+                .append(newestFirst ? " <= ?" : " >= ?")
+                .append(" AND (occurred_at")
+                .append(after)
+                .append(" OR id")
+                .append(after)
+                .append(")");
+            parameters.add(cursor.getDateTime());
+            parameters.add(cursor.getDateTime());
+            parameters.add(cursor.getPosition());
+        }
+        sql
+            .append(" ORDER BY occurred_at")
+            .append(order)
+            .append(", id")
+            .append(order)
+            .append(" LIMIT ?");
+        parameters.add(query.getLimit() + 1);
+
+        List<Transaction> transactions = new ArrayList<>();
+        String nextCursor = null;
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                sql.toString()
+            )
+        ) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                TransactionType[] types = TransactionType.values();
+                long lastId = 0;
+                while (resultSet.next()) {
+                    if (transactions.size() == query.getLimit()) {
+                        Transaction last = transactions.get(
+                            transactions.size() - 1
+                        );
+                        nextCursor = new HistoryCursor(
+                            last.getDateTime(),
+                            lastId
+                        ).encode();
+                        break;
+                    }
+                    lastId = resultSet.getLong(1);
+                    transactions.add(
+                        new Transaction(
+                            Money.toBigDecimal(resultSet.getLong(4)),
+                            resultSet.getString(3),
+                            types[resultSet.getInt(2)],
+                            resultSet.getObject(5, LocalDateTime.class)
+                        )
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying history: " + e.getMessage());
+            return null;
+        }
+        return new TransactionPage(transactions, nextCursor);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing database: " + e.getMessage());
+        }
+    }
+
+    // Изменение под монитором сервиса. При ошибке изменение в памяти отменяется:
+    // кошельки usernames перечитываются из базы уже после выхода из монитора
+    // (блокировка кошелька не берется под монитором, см. loadWallet)
+    private void write(String error, SqlAction action, String... usernames) {
+        try {
+            synchronized (this) {
+                action.run();
+            }
+        } catch (SQLException e) {
+            System.err.println(error + ": " + e.getMessage());
+            for (String username : usernames) {
+                User user = users.get(username);
+                if (user != null) {
+                    user
+                        .getWallet()
+                        .reload(wallet -> loadWallet(username, wallet));
+                }
+            }
+            throw new StorageException(error + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Пользователь без кошелька; бюджеты и транзакции читаются при первом обращении
+    private User lazyUser(String username, String password) {
+        User user = new User(username, password);
+        user.getWallet().setLoader(wallet -> loadWallet(username, wallet));
+        return user;
+    }
+
+    // Вызывается под блокировкой кошелька
+    private synchronized void loadWallet(String username, Wallet wallet) {
+        try {
+            try (
+                PreparedStatement statement = connection.prepareStatement(
+                    "SELECT category, amount FROM budgets WHERE username = ?"
+                )
+            ) {
+                statement.setString(1, username);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        wallet.setBudget(
+                            resultSet.getString(1),
+                            Money.toBigDecimal(resultSet.getLong(2))
+                        );
+                    }
+                }
+            }
+            try (
+                PreparedStatement statement = connection.prepareStatement(
+                    "SELECT type, category, amount, occurred_at" +
+                    " FROM transactions WHERE username = ? ORDER BY id"
+                )
+            ) {
+                statement.setString(1, username);
+                statement.setFetchSize(10_000);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    TransactionType[] types = TransactionType.values();
+                    List<Transaction> batch = new ArrayList<>();
+                    while (resultSet.next()) {
+                        batch.add(
+                            new Transaction(
+                                Money.toBigDecimal(resultSet.getLong(3)),
+                                resultSet.getString(2),
+                                types[resultSet.getInt(1)],
+                                resultSet.getObject(4, LocalDateTime.class)
+                            )
+                        );
+                    }
+                    wallet.addTransactions(batch);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading wallet: " + e.getMessage());
+        }
+    }
+
+    // Строки пользователя, снятые с кошелька до обращения к базе
+    private static final class UserRows {
+
+        private final String username;
+        private final String password;
+        private final Map<String, BigDecimal> budgets;
+        private final Collection<Transaction> transactions;
+
+        private UserRows(User user) {
+            this.username = user.getUsername();
+            this.password = user.getPassword();
+            this.budgets = user.getWallet().getBudgets();
+            this.transactions = user.getWallet().getTransactions();
+        }
+    }
+
+    private void insertUser(UserRows rows) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO users (username, password) VALUES (?, ?)"
+            )
+        ) {
+            statement.setString(1, rows.username);
+            statement.setString(2, rows.password);
+            statement.executeUpdate();
+        }
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                MERGE_BUDGET
+            )
+        ) {
+            for (var entry : rows.budgets.entrySet()) {
+                statement.setString(1, rows.username);
+                statement.setString(2, entry.getKey());
+                statement.setLong(
+                    3,
+                    Money.toMinorUnitsRounded(entry.getValue())
+                );
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        insertTransactions(rows.username, rows.transactions);
+    }
+
+    private void insertTransactions(
+        String username,
+        Collection<Transaction> transactions
+    ) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                INSERT_TRANSACTION
+            )
+        ) {
+            int pending = 0;
+            for (Transaction transaction : transactions) {
+                bindTransaction(statement, username, transaction);
+                statement.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static void bindTransaction(
+        PreparedStatement statement,
+        String username,
+        Transaction transaction
+    ) throws SQLException {
+        statement.setString(1, username);
+        statement.setInt(2, transaction.getType().ordinal());
+        statement.setString(3, transaction.getCategory());
+        statement.setString(4, Categories.key(transaction.getCategory()));
+        statement.setLong(
+            5,
+            Money.toMinorUnitsRounded(transaction.getAmount())
+        );
+        statement.setObject(6, transaction.getDateTime());
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    // Выполнение в одной транзакции СУБД; при ошибке изменения откатываются
+    private void inTransaction(SqlAction action) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            action.run();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Потоковые адаптеры Gson для моделей: читают и пишут напрямую через JsonReader/JsonWriter,
+// не строя промежуточное дерево JsonElement
+public final class JsonAdapters {
+
+    private JsonAdapters() {}
+
+    // Gson с зарегистрированными адаптерами; вывод компактный
+    public static Gson createGson() {
+        LocalDateTimeAdapter dateTimeAdapter = new LocalDateTimeAdapter();
+        BigDecimalAdapter bigDecimalAdapter = new BigDecimalAdapter();
+        TransactionAdapter transactionAdapter = new TransactionAdapter(
+            bigDecimalAdapter,
+            dateTimeAdapter
+        );
+        return new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, dateTimeAdapter)
+            .registerTypeAdapter(BigDecimal.class, bigDecimalAdapter)
+            .registerTypeAdapter(
+                Transaction.class,
+                transactionAdapter.nullSafe()
+            )
+            .registerTypeAdapter(
+                Wallet.class,
+                new WalletAdapter(transactionAdapter, bigDecimalAdapter)
+                    .nullSafe()
+            )
+            .create();
+    }
+
+    private static class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+
+        private static final DateTimeFormatter formatter =
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+        @Override
+        public void write(JsonWriter out, LocalDateTime value)
+            throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(formatter.format(value));
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return LocalDateTime.parse(in.nextString(), formatter);
+        }
+    }
+
+    private static class BigDecimalAdapter extends TypeAdapter<BigDecimal> {
+
+        @Override
+        public void write(JsonWriter out, BigDecimal value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(value);
+        }
+
+        @Override
+        public BigDecimal read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return new BigDecimal(in.nextString());
+        }
+    }
+
+    private static class TransactionAdapter extends TypeAdapter<Transaction> {
+
+        private final BigDecimalAdapter bigDecimalAdapter;
+        private final LocalDateTimeAdapter dateTimeAdapter;
+
+        private TransactionAdapter(
+            BigDecimalAdapter bigDecimalAdapter,
+            LocalDateTimeAdapter dateTimeAdapter
+        ) {
+            this.bigDecimalAdapter = bigDecimalAdapter;
+            this.dateTimeAdapter = dateTimeAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Transaction value)
+            throws IOException {
+            out.beginObject();
+            out.name("amount");
+            bigDecimalAdapter.write(out, value.getAmount());
+            out.name("category").value(value.getCategory());
+            out.name("dateTime");
+            dateTimeAdapter.write(out, value.getDateTime());
+            out.name("type").value(value.getType().name());
+            out.endObject();
+        }
+
+        @Override
+        public Transaction read(JsonReader in) throws IOException {
+            BigDecimal amount = null;
+            String category = null;
+            LocalDateTime dateTime = null;
+            TransactionType type = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "amount" -> amount = bigDecimalAdapter.read(in);
+                    case "category" -> category = in.nextString();
+                    case "dateTime" -> dateTime = dateTimeAdapter.read(in);
+                    case "type" -> type = TransactionType.valueOf(
+                        in.nextString()
+                    );
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // Записи без времени (старый формат) получают время загрузки.
+            // Прочитанная категория не хранится: транзакция держит только ее номер в словаре
+            return new Transaction(
+                amount,
+                category,
+                type,
+                dateTime != null ? dateTime : LocalDateTime.now()
+            );
+        }
+    }
+
+    private static class WalletAdapter extends TypeAdapter<Wallet> {
+
+        private final TransactionAdapter transactionAdapter;
+        private final BigDecimalAdapter bigDecimalAdapter;
+
+        private WalletAdapter(
+            TransactionAdapter transactionAdapter,
+            BigDecimalAdapter bigDecimalAdapter
+        ) {
+            this.transactionAdapter = transactionAdapter;
+            this.bigDecimalAdapter = bigDecimalAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Wallet value) throws IOException {
+            out.beginObject();
+            out.name("balance");
+            bigDecimalAdapter.write(out, value.getBalance());
+            out.name("transactions").beginArray();
+            for (Transaction transaction : value.getTransactions()) {
+                transactionAdapter.write(out, transaction);
+            }
+            out.endArray();
+            out.name("budgets").beginObject();
+            for (var entry : value.getBudgets().entrySet()) {
+                out.name(entry.getKey());
+                bigDecimalAdapter.write(out, entry.getValue());
+            }
+            out.endObject();
+            out.endObject();
+        }
+
+        @Override
+        public Wallet read(JsonReader in) throws IOException {
+            Wallet wallet = new Wallet();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    // Восстанавливаем транзакции, баланс пересчитывается по ним
+                    case "transactions" -> {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            wallet.addTransaction(transactionAdapter.read(in));
+                        }
+                        in.endArray();
+                    }
+                    // Восстанавливаем бюджеты
+                    case "budgets" -> {
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String category = in.nextName();
+                            wallet.setBudget(
+                                category,
+                                bigDecimalAdapter.read(in)
+                            );
+                        }
+                        in.endObject();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return wallet;
+        }
+    }
+}
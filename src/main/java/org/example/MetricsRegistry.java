@@ -0,0 +1,93 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Локальный реестр метрик: гистограммы задержек (см. LatencyHistogram) и счетчики по имени.
+// Метрика создается при первом обращении и дальше берется из ConcurrentHashMap без блокировок,
+// поэтому запись можно оставлять включенной в рабочем режиме.
+// Содержимое доступно текстом (getReport) и через JMX (registerMBean)
+public class MetricsRegistry implements MetricsRegistryMXBean {
+
+    public static final String OBJECT_NAME = "org.example:type=Metrics";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, LatencyHistogram> timers;
+    private final Map<String, LongAdder> counters;
+
+    public MetricsRegistry() {
+        this.timers = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    // Общий реестр процесса
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        return timer != null
+            ? timer
+            : timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null
+            ? counter
+            : counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    // Текстовый отчет: по строке на метрику, задержки в микросекундах
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        new TreeMap<>(timers).forEach((name, timer) ->
+            report.append(
+                String.format(
+                    "%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus " +
+                    "p999=%.1fus max=%.1fus%n",
+                    name,
+                    timer.getCount(),
+                    timer.getMean() / 1000,
+                    timer.getPercentile(0.5) / 1000.0,
+                    timer.getPercentile(0.99) / 1000.0,
+                    timer.getPercentile(0.999) / 1000.0,
+                    timer.getMax() / 1000.0
+                )
+            )
+        );
+        new TreeMap<>(counters).forEach((name, counter) ->
+            report.append(name).append(' ').append(counter.sum()).append('\n')
+        );
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    // Регистрация в платформенном MBean-сервере; повторная регистрация игнорируется
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println(
+                "Cannot register metrics MBean: " + e.getMessage()
+            );
+        }
+    }
+}
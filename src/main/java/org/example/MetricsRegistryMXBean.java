@@ -0,0 +1,7 @@
+package org.example;
+
+// Управляющий интерфейс реестра метрик для JMX (jconsole, jcmd)
+public interface MetricsRegistryMXBean {
+    String getReport();
+    void reset();
+}
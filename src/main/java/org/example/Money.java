@@ -0,0 +1,95 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Денежная сумма с фиксированным масштабом: целое число копеек (сотых долей) в long.
+// Сложение и вычитание проверяют переполнение. Внутри Wallet и отчетов суммы хранятся
+// как long копеек без объектов; в BigDecimal они переводятся только на границе API
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    // Точное преобразование; ArithmeticException, если больше 2 знаков после запятой
+    // или сумма не помещается в long
+    public static Money of(BigDecimal amount) {
+        return ofMinorUnits(toMinorUnits(amount));
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(
+                amount.scale() > SCALE &&
+                amount.stripTrailingZeros().scale() > SCALE
+                    ? "Amount has more than " + SCALE + " decimal places"
+                    : "Amount is too large"
+            );
+        }
+    }
+
+    // Для данных, сохраненных до перехода на фиксированный масштаб
+    public static long toMinorUnitsRounded(BigDecimal amount) {
+        return toMinorUnits(amount.setScale(SCALE, RoundingMode.HALF_EVEN));
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(minorUnits);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).minorUnits == minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
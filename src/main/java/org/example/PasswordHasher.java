@@ -0,0 +1,130 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Соленый медленный хеш паролей (PBKDF2 из JDK).
+// Формат хранимой строки: pbkdf2-sha256$<iterations>$<salt base64>$<hash base64>.
+// Строка без этого префикса считается паролем в открытом виде (данные до перехода на хеши);
+// сравнение в обоих случаях выполняется за время, не зависящее от совпавшего префикса
+public class PasswordHasher {
+
+    public static final int DEFAULT_ITERATIONS = 310_000;
+    public static final int DEFAULT_SALT_BYTES = 16;
+    public static final int DEFAULT_KEY_BITS = 256;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+
+    private final int iterations;
+    private final int saltBytes;
+    private final int keyBits;
+    private final SecureRandom random;
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS, DEFAULT_SALT_BYTES, DEFAULT_KEY_BITS);
+    }
+
+    public PasswordHasher(int iterations, int saltBytes, int keyBits) {
+        if (iterations <= 0 || saltBytes <= 0 || keyBits <= 0) {
+            throw new IllegalArgumentException(
+                "Hash parameters must be positive"
+            );
+        }
+        this.iterations = iterations;
+        this.saltBytes = saltBytes;
+        this.keyBits = keyBits;
+        this.random = new SecureRandom();
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[saltBytes];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations, keyBits);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return (
+            PREFIX +
+            iterations +
+            "$" +
+            encoder.encodeToString(salt) +
+            "$" +
+            encoder.encodeToString(hash)
+        );
+    }
+
+    public boolean verify(String password, String stored) {
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(
+                password.getBytes(StandardCharsets.UTF_8),
+                stored.getBytes(StandardCharsets.UTF_8)
+            );
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(parts[1]);
+            byte[] expected = decoder.decode(parts[2]);
+            byte[] actual = derive(
+                password,
+                salt,
+                Integer.parseInt(parts[0]),
+                expected.length * 8
+            );
+            return MessageDigest.isEqual(actual, expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Открытый пароль или хеш с другими параметрами - пересчитать после успешного входа
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        try {
+            return (
+                parts.length != 3 ||
+                !parts[0].equals(Integer.toString(iterations)) ||
+                Base64.getDecoder().decode(parts[2]).length * 8 != keyBits
+            );
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(
+        String password,
+        byte[] salt,
+        int iterations,
+        int keyBits
+    ) {
+        PBEKeySpec spec = new PBEKeySpec(
+            password.toCharArray(),
+            salt,
+            iterations,
+            keyBits
+        );
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM)
+                .generateSecret(spec)
+                .getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
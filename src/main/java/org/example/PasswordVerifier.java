@@ -0,0 +1,164 @@
+package org.example;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Проверка и хеширование паролей на выделенном ограниченном пуле потоков.
+// PBKDF2 занимает процессор на десятки миллисекунд, поэтому число одновременных вычислений
+// ограничено числом потоков пула, а очередь - queueCapacity; при переполнении вход сразу
+// отклоняется, и хеширование не вытесняет остальную работу.
+// Успешные проверки кэшируются: хранимый хеш -> SHA-256 от пароля с ключом процесса.
+// Повторный вход с тем же паролем проверяется одним быстрым хешем в потоке запроса;
+// кэш живет только в памяти, ключ случайный для каждого запуска
+public class PasswordVerifier implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final int CACHE_KEY_BYTES = 32;
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor executor;
+    private final int cacheSize;
+    // Защищен собственным монитором
+    private final Map<String, byte[]> verified;
+    private final byte[] cacheKey;
+    // Хеш для проверки пароля несуществующего пользователя: время ответа то же, что и
+    // для существующего. Вычисляется при первом обращении
+    private volatile String dummyHash;
+
+    public PasswordVerifier() {
+        this(
+            new PasswordHasher(),
+            Runtime.getRuntime().availableProcessors(),
+            DEFAULT_QUEUE_CAPACITY,
+            DEFAULT_CACHE_SIZE
+        );
+    }
+
+    // cacheSize = 0 - без кэша, каждая проверка вычисляет PBKDF2
+    public PasswordVerifier(
+        PasswordHasher hasher,
+        int threads,
+        int queueCapacity,
+        int cacheSize
+    ) {
+        if (threads <= 0 || queueCapacity <= 0 || cacheSize < 0) {
+            throw new IllegalArgumentException("Invalid verifier limits");
+        }
+        this.hasher = hasher;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "password-hasher-" + threadNumber.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.cacheSize = cacheSize;
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> e) {
+                return size() > cacheSize;
+            }
+        };
+        this.cacheKey = new byte[CACHE_KEY_BYTES];
+        new SecureRandom().nextBytes(cacheKey);
+    }
+
+    // Хеширование нового пароля
+    public String hash(String password) {
+        return run(() -> hasher.hash(password));
+    }
+
+    public boolean verify(String password, String stored) {
+        // Пароль в открытом виде (старые данные) сравнивается без пула
+        if (!PasswordHasher.isHashed(stored)) {
+            return hasher.verify(password, stored);
+        }
+        byte[] digest = cacheSize > 0 ? fastDigest(password) : null;
+        if (digest != null) {
+            byte[] cached;
+            synchronized (verified) {
+                cached = verified.get(stored);
+            }
+            if (cached != null && MessageDigest.isEqual(cached, digest)) {
+                return true;
+            }
+        }
+        boolean valid = run(() -> hasher.verify(password, stored));
+        if (valid && digest != null) {
+            synchronized (verified) {
+                verified.put(stored, digest);
+            }
+        }
+        return valid;
+    }
+
+    // Проверка для несуществующего пользователя: тратит столько же времени и всегда ложна
+    public void verifyUnknown(String password) {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = hash("");
+            dummyHash = hash;
+        }
+        run(() -> hasher.verify(password, dummyHash));
+    }
+
+    public boolean needsRehash(String stored) {
+        return hasher.needsRehash(stored);
+    }
+
+    private <T> T run(Callable<T> task) {
+        try {
+            return executor.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            throw new AuthenticationException(
+                "Too many concurrent logins, try again later"
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException("Login interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private byte[] fastDigest(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(cacheKey);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+// Итоги по доходам и расходам за период [from, to); суммы накапливаются в копейках
+public class PeriodReport {
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private long totalIncome;
+    private long totalExpenses;
+    private final CategoryTotals incomesByCategory;
+    private final CategoryTotals expensesByCategory;
+
+    public PeriodReport(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        this.totalIncome = 0;
+        this.totalExpenses = 0;
+        this.incomesByCategory = new CategoryTotals();
+        this.expensesByCategory = new CategoryTotals();
+    }
+
+    // Учет одной транзакции
+    void add(TransactionType type, String category, long amount) {
+        if (type == TransactionType.INCOME) {
+            totalIncome = Math.addExact(totalIncome, amount);
+            incomesByCategory.add(category, amount);
+        } else {
+            totalExpenses = Math.addExact(totalExpenses, amount);
+            expensesByCategory.add(category, amount);
+        }
+    }
+
+    // Учет уже агрегированных сумм по категориям (итоги целого дня)
+    void addAll(CategoryTotals incomes, CategoryTotals expenses) {
+        incomes.forEach((category, amount) ->
+            add(TransactionType.INCOME, category, amount)
+        );
+        expenses.forEach((category, amount) ->
+            add(TransactionType.EXPENSE, category, amount)
+        );
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public BigDecimal getTotalIncome() {
+        return Money.toBigDecimal(totalIncome);
+    }
+
+    public BigDecimal getTotalExpenses() {
+        return Money.toBigDecimal(totalExpenses);
+    }
+
+    public Map<String, BigDecimal> getIncomesByCategory() {
+        return Collections.unmodifiableMap(
+            incomesByCategory.toBigDecimalMap()
+        );
+    }
+
+    public Map<String, BigDecimal> getExpensesByCategory() {
+        return Collections.unmodifiableMap(
+            expensesByCategory.toBigDecimalMap()
+        );
+    }
+}
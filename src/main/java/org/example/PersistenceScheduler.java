@@ -0,0 +1,128 @@
+package org.example;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Фоновая групповая фиксация изменений (write-behind).
+// Потоки запросов только отмечают изменение; сброс на диск выполняет отдельный поток,
+// когда накопилось countThreshold изменений или прошло не больше durabilityWindow
+// с момента первого несброшенного. Нулевое окно - синхронный режим: сброс в потоке запроса
+public class PersistenceScheduler implements Closeable {
+
+    private final Runnable flushAction;
+    private final int countThreshold;
+    private final Duration durabilityWindow;
+    // null в синхронном режиме
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicInteger pendingChanges;
+    // Запланирован ли уже сброс по времени для текущей группы изменений
+    private final AtomicBoolean flushScheduled;
+    private final AtomicBoolean closed;
+
+    public PersistenceScheduler(
+        Runnable flushAction,
+        int countThreshold,
+        Duration durabilityWindow
+    ) {
+        if (countThreshold <= 0) {
+            throw new IllegalArgumentException(
+                "countThreshold must be positive"
+            );
+        }
+        if (durabilityWindow.isNegative()) {
+            throw new IllegalArgumentException(
+                "durabilityWindow must not be negative"
+            );
+        }
+        this.flushAction = flushAction;
+        this.countThreshold = countThreshold;
+        this.durabilityWindow = durabilityWindow;
+        this.pendingChanges = new AtomicInteger();
+        this.flushScheduled = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
+        this.executor = durabilityWindow.isZero() ? null : createExecutor();
+    }
+
+    // Отложенные сбросы при остановке отменяются: close перед ней сбрасывает все сам,
+    // иначе остановка ждала бы конца окна
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+                Thread thread = new Thread(runnable, "persistence-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    // Отметка об изменении; не блокируется на вводе-выводе (кроме синхронного режима)
+    public void recordChange() {
+        if (executor == null || closed.get()) {
+            runFlush();
+            return;
+        }
+        if (pendingChanges.incrementAndGet() >= countThreshold) {
+            executor.execute(this::runFlush);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(
+                this::runFlush,
+                durabilityWindow.toNanos(),
+                TimeUnit.NANOSECONDS
+            );
+        }
+    }
+
+    // Выполняется только в потоке сброса (или в потоке запроса в синхронном режиме)
+    private void runFlush() {
+        flushScheduled.set(false);
+        pendingChanges.set(0);
+        try {
+            flushAction.run();
+        } catch (RuntimeException e) {
+            System.err.println("Error flushing data: " + e.getMessage());
+        }
+    }
+
+    // Сброс всех отмеченных изменений; возвращается после завершения записи
+    public void flush() {
+        if (executor == null || executor.isShutdown()) {
+            runFlush();
+            return;
+        }
+        try {
+            executor.submit(this::runFlush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error flushing data: " + e.getMessage());
+        }
+    }
+
+    // Финальный сброс и остановка потока; последующие изменения сбрасываются синхронно
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        flush();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(
+                    durabilityWindow.toMillis() + 1000,
+                    TimeUnit.MILLISECONDS
+                );
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Хранилище, разбитое по хешу имени пользователя на shardCount независимых сегментов.
+// Каждый сегмент - отдельный FileDataService со своим снимком users-<номер>.json и журналом,
+// поэтому сегменты загружаются и сохраняются параллельно, а сворачивание журнала
+// переписывает только тот сегмент, в котором накопились изменения.
+// Число сегментов записывается в файл users.shards и при следующих запусках берется из него:
+// от него зависит, в каком сегменте лежит пользователь.
+// Если в каталоге есть только несегментированный users.json, он разносится по сегментам
+// при первом запуске; старые файлы остаются на месте.
+// Перевод между сегментами сначала фиксируется одной записью в общем журнале
+// users.transfers и только после ее fsync ставится в очереди журналов обоих сегментов.
+// Записи общего журнала сбрасываются группами, как журналы сегментов: поток запроса
+// только ставит запись в очередь. Пока запись в общий журнал не удается, новые переводы
+// между сегментами отклоняются StorageException, а их транзакции убираются из кошельков.
+// При загрузке сегменты применяют общий журнал после своих: сторона, уже попавшая в снимок
+// или журнал сегмента, пропускается по номеру транзакции, поэтому сбой между сбросами
+// сегментов не сохраняет перевод наполовину. Записи общего журнала удаляются, когда журналы
+// сегментов сброшены дальше них
+public class ShardedFileDataService implements DataService {
+
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private static final String MANIFEST_FILE = "users.shards";
+    private static final String LEGACY_FILE = "users.json";
+    private static final String TRANSFERS_FILE = "users.transfers";
+    // Общий журнал переводов очищается после стольких записей или по истечении окна
+    private static final int TRANSFERS_TRIM_THRESHOLD = 1000;
+    private static final Duration TRANSFERS_TRIM_WINDOW = Duration.ofSeconds(10);
+
+    private final FileDataService[] shards;
+    private final WriteAheadJournal transfers;
+    // Переводы, ожидающие записи в общий журнал
+    private final List<PendingTransfer> pendingTransfers;
+    // Ошибка последней записи общего журнала; null - запись удалась
+    private volatile IOException transfersFailure;
+    private final PersistenceScheduler transfersWriter;
+    private final PersistenceScheduler transfersTrimmer;
+
+    public ShardedFileDataService(Path directory) {
+        this(directory, DEFAULT_SHARD_COUNT);
+    }
+
+    public ShardedFileDataService(Path directory, int shardCount) {
+        this(directory, shardCount, FileDataService::new);
+    }
+
+    public ShardedFileDataService(
+        Path directory,
+        int shardCount,
+        Function<Path, FileDataService> shardFactory
+    ) {
+        this(
+            directory,
+            shardCount,
+            shardFactory,
+            FileDataService.DEFAULT_DURABILITY_WINDOW
+        );
+    }
+
+    // shardFactory создает сегмент по пути его снимка (параметры журнала и снимков);
+    // durabilityWindow - задержка записи в общий журнал переводов (0 - синхронно)
+    public ShardedFileDataService(
+        Path directory,
+        int shardCount,
+        Function<Path, FileDataService> shardFactory,
+        Duration durabilityWindow
+    ) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        // До загрузки: перенос старого users.json сбрасывает данные через flush
+        this.pendingTransfers = new ArrayList<>();
+        this.transfersWriter = new PersistenceScheduler(
+            this::writeTransfers,
+            FileDataService.DEFAULT_SYNC_EVERY,
+            durabilityWindow
+        );
+        this.transfersTrimmer = new PersistenceScheduler(
+            this::trimTransfers,
+            TRANSFERS_TRIM_THRESHOLD,
+            TRANSFERS_TRIM_WINDOW
+        );
+        try {
+            Files.createDirectories(directory);
+            Path manifest = directory.resolve(MANIFEST_FILE);
+            boolean created = !Files.exists(manifest);
+            int count = created ? shardCount : readShardCount(manifest);
+            if (count != shardCount) {
+                System.err.println(
+                    "Using " + count + " shards recorded in " + manifest
+                );
+            }
+            // Каждый сегмент читает свой снимок и журнал в конструкторе
+            this.shards = IntStream.range(0, count)
+                .parallel()
+                .mapToObj(i -> shardFactory.apply(shardPath(directory, i)))
+                .toArray(FileDataService[]::new);
+            this.transfers = new WriteAheadJournal(
+                directory.resolve(TRANSFERS_FILE),
+                FileDataService.DEFAULT_SYNC_EVERY
+            );
+            replayTransfers();
+            if (created) {
+                migrateLegacy(directory.resolve(LEGACY_FILE));
+                Files.write(
+                    manifest,
+                    String.valueOf(count).getBytes(StandardCharsets.US_ASCII)
+                );
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open sharded storage", e);
+        }
+    }
+
+    // Восстановление сторон переводов, не дошедших до журналов сегментов; сегменты,
+    // получившие их, сразу сохраняются, после чего общий журнал больше не нужен
+    private void replayTransfers() throws IOException {
+        List<String> records = transfers.readRecords();
+        if (records.isEmpty()) {
+            return;
+        }
+        long mark = transfers.mark();
+        IntStream.range(0, shards.length)
+            .parallel()
+            .filter(i -> shards[i].replayTransfers(records))
+            .forEach(i -> shards[i].compact());
+        transfers.discardBefore(mark);
+    }
+
+    // Групповая фиксация переводов: вся очередь одной записью в общий журнал и один fsync,
+    // затем записи ставятся в очереди сегментов. При ошибке очередь сохраняется
+    // до следующей попытки. Запись и постановка - под монитором журнала: mark
+    // в trimTransfers не захватывает записи, еще не поставленные в очереди сегментов
+    private void writeTransfers() {
+        List<PendingTransfer> batch;
+        synchronized (transfers) {
+            synchronized (pendingTransfers) {
+                batch = new ArrayList<>(pendingTransfers);
+                pendingTransfers.clear();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<String> records = new ArrayList<>(batch.size());
+            for (PendingTransfer transfer : batch) {
+                records.add(transfer.record);
+            }
+            try {
+                transfers.appendAll(records);
+                transfersFailure = null;
+            } catch (IOException e) {
+                System.err.println(
+                    "Error writing transfers: " + e.getMessage()
+                );
+                synchronized (pendingTransfers) {
+                    transfersFailure = e;
+                    pendingTransfers.addAll(0, batch);
+                }
+                return;
+            }
+            for (PendingTransfer transfer : batch) {
+                transfer.senderShard.stageRecord(transfer.record);
+                transfer.recipientShard.stageRecord(transfer.record);
+            }
+        }
+        Set<FileDataService> touched = new HashSet<>();
+        for (PendingTransfer transfer : batch) {
+            touched.add(transfer.senderShard);
+            touched.add(transfer.recipientShard);
+            transfersTrimmer.recordChange();
+        }
+        touched.forEach(FileDataService::scheduleFlush);
+    }
+
+    // Сброс сегментов и удаление записей общего журнала до mark: они поставлены
+    // в очереди сегментов раньше и уже сброшены. Вызывается не под блокировками кошельков
+    private synchronized void trimTransfers() {
+        try {
+            long mark = transfers.mark();
+            flushShards();
+            if (mark > 0) {
+                transfers.discardBefore(mark);
+            }
+        } catch (IOException e) {
+            System.err.println(
+                "Error truncating transfer journal: " + e.getMessage()
+            );
+        }
+    }
+
+    private static int readShardCount(Path manifest) throws IOException {
+        String text = Files.readString(manifest, StandardCharsets.US_ASCII);
+        try {
+            int count = Integer.parseInt(text.trim());
+            if (count <= 0) {
+                throw new IOException("Invalid shard count in " + manifest);
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid shard count in " + manifest);
+        }
+    }
+
+    private static Path shardPath(Path directory, int shard) {
+        return directory.resolve(String.format("users-%03d.json", shard));
+    }
+
+    private void migrateLegacy(Path legacy) {
+        if (!Files.exists(legacy)) {
+            return;
+        }
+        FileDataService source = new FileDataService(legacy);
+        Collection<User> users;
+        try {
+            users = source.getAllUsers();
+        } finally {
+            source.close();
+        }
+        // Через журналы сегментов, чтобы пользователи попали и в их карты в памяти
+        users.forEach(this::addUser);
+        flush();
+        compact();
+        System.err.println(
+            "Migrated " + users.size() + " users from " + legacy
+        );
+    }
+
+    // Сегмент не зависит от числа процессоров и порядка вставки: hashCode строки фиксирован
+    private FileDataService shard(String username) {
+        return shards[Math.floorMod(username.hashCode(), shards.length)];
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Снимок по сегментам; сегмент переписывается, только если в нем есть
+    // несохраненные изменения или переданные пользователи отличаются от хранящихся в нем
+    @Override
+    public void saveData(Map<String, User> users) {
+        List<Map<String, User>> partitions = partition(users);
+        IntStream.range(0, shards.length)
+            .parallel()
+            .forEach(i -> {
+                FileDataService shard = shards[i];
+                Map<String, User> partition = partitions.get(i);
+                if (shard.hasUnsavedChanges() || !holds(shard, partition)) {
+                    shard.saveData(partition);
+                }
+            });
+    }
+
+    private List<Map<String, User>> partition(Map<String, User> users) {
+        List<Map<String, User>> partitions = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new HashMap<>());
+        }
+        for (Map.Entry<String, User> entry : users.entrySet()) {
+            int shard = Math.floorMod(entry.getKey().hashCode(), shards.length);
+            partitions.get(shard).put(entry.getKey(), entry.getValue());
+        }
+        return partitions;
+    }
+
+    // Сегмент хранит ровно эти объекты пользователей
+    private static boolean holds(
+        FileDataService shard,
+        Map<String, User> partition
+    ) {
+        if (shard.getAllUsers().size() != partition.size()) {
+            return false;
+        }
+        for (Map.Entry<String, User> entry : partition.entrySet()) {
+            if (shard.getUser(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Сворачивание журналов в снимки только у сегментов с изменениями
+    public void compact() {
+        IntStream.range(0, shards.length)
+            .parallel()
+            .filter(i -> shards[i].hasUnsavedChanges())
+            .forEach(i -> shards[i].compact());
+    }
+
+    // Чтение всех сегментов с диска параллельно
+    @Override
+    public Map<String, User> loadData() {
+        List<Map<String, User>> loaded = IntStream.range(0, shards.length)
+            .parallel()
+            .mapToObj(i -> shards[i].loadData())
+            .toList();
+        Map<String, User> users = new HashMap<>();
+        loaded.forEach(users::putAll);
+        return users;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        List<User> users = new ArrayList<>();
+        for (FileDataService shard : shards) {
+            users.addAll(shard.getAllUsers());
+        }
+        return users;
+    }
+
+    @Override
+    public void addUser(User user) {
+        shard(user.getUsername()).addUser(user);
+    }
+
+    @Override
+    public User getUser(String username) {
+        return shard(username).getUser(username);
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return shard(username).userExists(username);
+    }
+
+    @Override
+    public void removeUser(String username) {
+        shard(username).removeUser(username);
+    }
+
+    @Override
+    public void appendTransaction(String username, Transaction transaction) {
+        shard(username).appendTransaction(username, transaction);
+    }
+
+    @Override
+    public void appendTransactions(
+        String username,
+        List<Transaction> transactions
+    ) {
+        shard(username).appendTransactions(username, transactions);
+    }
+
+    // В одном сегменте - одна запись журнала. Между сегментами запись ставится
+    // в очередь общего журнала переводов (см. writeTransfers). Ждать сброса здесь нельзя:
+    // вызов идет под блокировками кошельков, которые нужны фоновому снимку, поэтому
+    // сброс только планируется. Если последняя запись общего журнала не удалась
+    // и перевод еще в очереди, он снимается с нее и отменяется, как в JdbcDataService
+    @Override
+    public void appendTransfer(
+        String sender,
+        Transaction debit,
+        String recipient,
+        Transaction credit
+    ) {
+        FileDataService senderShard = shard(sender);
+        FileDataService recipientShard = shard(recipient);
+        if (recipientShard == senderShard) {
+            senderShard.appendTransfer(sender, debit, recipient, credit);
+            return;
+        }
+        // Вызывается под блокировками обоих кошельков сразу после добавления транзакций
+        String record = senderShard.transferRecord(
+            sender,
+            debit,
+            senderShard.sequenceOf(sender),
+            recipient,
+            credit,
+            recipientShard.sequenceOf(recipient)
+        );
+        PendingTransfer transfer = new PendingTransfer(
+            record,
+            senderShard,
+            recipientShard
+        );
+        synchronized (pendingTransfers) {
+            pendingTransfers.add(transfer);
+        }
+        transfersWriter.recordChange();
+        IOException failure;
+        synchronized (pendingTransfers) {
+            failure = transfersFailure;
+            if (failure == null || !pendingTransfers.remove(transfer)) {
+                return;
+            }
+        }
+        // Транзакции перевода - последние в обоих кошельках: вызов под их блокировками
+        senderShard.getUser(sender).getWallet().removeLastTransaction();
+        recipientShard.getUser(recipient).getWallet().removeLastTransaction();
+        throw new StorageException(
+            "Error writing transfer: " + failure.getMessage(),
+            failure
+        );
+    }
+
+    // Запись перевода и сегменты обеих сторон; сравнивается по ссылке
+    private static class PendingTransfer {
+
+        private final String record;
+        private final FileDataService senderShard;
+        private final FileDataService recipientShard;
+
+        private PendingTransfer(
+            String record,
+            FileDataService senderShard,
+            FileDataService recipientShard
+        ) {
+            this.record = record;
+            this.senderShard = senderShard;
+            this.recipientShard = recipientShard;
+        }
+    }
+
+    @Override
+    public void updateBudget(
+        String username,
+        String category,
+        BigDecimal amount
+    ) {
+        shard(username).updateBudget(username, category, amount);
+    }
+
+    @Override
+    public void updatePassword(String username, String passwordHash) {
+        shard(username).updatePassword(username, passwordHash);
+    }
+
+    @Override
+    public void flush() {
+        transfersWriter.flush();
+        trimTransfers();
+    }
+
+    private void flushShards() {
+        IntStream.range(0, shards.length)
+            .parallel()
+            .forEach(i -> shards[i].flush());
+    }
+
+    @Override
+    public void close() {
+        // Последняя очистка общего журнала сбрасывает и сегменты
+        transfersWriter.close();
+        transfersTrimmer.close();
+        IntStream.range(0, shards.length)
+            .parallel()
+            .forEach(i -> shards[i].close());
+        try {
+            transfers.close();
+        } catch (IOException e) {
+            System.err.println(
+                "Error closing transfer journal: " + e.getMessage()
+            );
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Файлы снимков с защитой от оборванной записи.
+// Снимок пишется во временный файл, сбрасывается на диск (fsync) и атомарно переименовывается
+// в основной; предыдущие снимки сдвигаются в <файл>.1 ... <файл>.N.
+// После тела снимка дописывается строка-футер с длиной тела, его CRC32C и номером
+// сегмента журнала, по который включительно снимок содержит изменения:
+//   #snapshot length=<байт> crc32c=<hex> segment=<номер>
+// При чтении проверяются футер и контрольная сумма; поврежденный снимок пропускается,
+// используется следующий по старшинству. Файлы без футера (старый формат) принимаются как есть.
+// Поврежденный файл переименовывается в <файл>.corrupt-<время> и не удаляется: ротация
+// не должна вытеснить его как обычный старый снимок. Пока такие файлы есть, хранилище
+// не считается новым (см. exists)
+final class SnapshotFiles {
+
+    private static final String FOOTER_PREFIX = "#snapshot ";
+    private static final int FOOTER_MAX_BYTES = 128;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CORRUPT_SUFFIX = ".corrupt-";
+    // Номер сегмента у снимков старого формата
+    static final long NO_SEGMENT = -1;
+
+    // Тело снимка; поток закрывать не нужно
+    @FunctionalInterface
+    interface BodyWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface BodyReader<T> {
+        T read(Reader in) throws IOException;
+    }
+
+    // Время и объем собственно файлового ввода-вывода одной операции; остальное время
+    // операции уходит на сериализацию
+    static final class IoStats {
+
+        long nanos;
+        long bytes;
+    }
+
+    // Прочитанный снимок: данные, файл и номер сегмента журнала (NO_SEGMENT - не записан)
+    static final class Recovered<T> {
+
+        final T data;
+        final Path file;
+        final long segment;
+
+        private Recovered(T data, Path file, long segment) {
+            this.data = data;
+            this.file = file;
+            this.segment = segment;
+        }
+    }
+
+    private final Path path;
+    // Сколько предыдущих снимков хранить помимо текущего
+    private final int retained;
+
+    SnapshotFiles(Path path, int retained) {
+        if (retained < 0) {
+            throw new IllegalArgumentException("retained must not be negative");
+        }
+        this.path = path;
+        this.retained = retained;
+    }
+
+    // Есть ли снимки, в том числе отложенные как поврежденные
+    boolean exists() {
+        for (Path candidate : candidates()) {
+            if (Files.exists(candidate)) {
+                return true;
+            }
+        }
+        return !quarantined().isEmpty();
+    }
+
+    // Основной ли это снимок (а не временный или предыдущий)
+    boolean isCurrent(Path file) {
+        return file.equals(path);
+    }
+
+    // Запись нового снимка; при любой ошибке текущий снимок остается нетронутым.
+    // segment - последний сегмент журнала, изменения которого вошли в снимок
+    void write(BodyWriter body, long segment) throws IOException {
+        write(body, segment, new IoStats());
+    }
+
+    void write(BodyWriter body, long segment, IoStats stats)
+        throws IOException {
+        Path temp = tempPath();
+        try (
+            FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            OutputStream raw = new TimedOutputStream(
+                Channels.newOutputStream(channel),
+                stats
+            );
+            ChecksumOutputStream checked = new ChecksumOutputStream(raw);
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(checked, StandardCharsets.UTF_8),
+                1 << 16
+            );
+            body.write(writer);
+            writer.flush();
+            raw.write(
+                footer(checked.count, checked.crc.getValue(), segment).getBytes(
+                    StandardCharsets.US_ASCII
+                )
+            );
+            long start = System.nanoTime();
+            channel.force(true);
+            stats.nanos += System.nanoTime() - start;
+        }
+        long start = System.nanoTime();
+        rotate();
+        move(temp, path);
+        syncDirectory(path);
+        stats.nanos += System.nanoTime() - start;
+    }
+
+    // Чтение самого свежего целого снимка; null - ни одного целого снимка нет.
+    // Поврежденные снимки по пути откладываются (quarantine)
+    <T> Recovered<T> readNewest(BodyReader<T> body) {
+        return readNewest(body, new IoStats());
+    }
+
+    <T> Recovered<T> readNewest(BodyReader<T> body, IoStats stats) {
+        for (Path candidate : candidates()) {
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+            try {
+                long size = Files.size(candidate);
+                Footer footer = readFooter(candidate, size);
+                T result = readVerified(candidate, size, footer, body, stats);
+                if (!candidate.equals(path)) {
+                    System.err.println(
+                        "Recovered data from snapshot " + candidate
+                    );
+                }
+                return new Recovered<>(
+                    result,
+                    candidate,
+                    footer != null ? footer.segment : NO_SEGMENT
+                );
+            } catch (IOException | RuntimeException e) {
+                System.err.println(
+                    "Snapshot " + candidate + " is damaged: " + e.getMessage()
+                );
+                quarantine(candidate);
+            }
+        }
+        return null;
+    }
+
+    // Номера сегментов журнала всех снимков с футером; поврежденные пропускаются
+    List<Long> segments() {
+        List<Long> segments = new ArrayList<>();
+        for (Path candidate : candidates()) {
+            try {
+                if (Files.exists(candidate)) {
+                    Footer footer = readFooter(candidate, Files.size(candidate));
+                    if (footer != null && footer.segment != NO_SEGMENT) {
+                        segments.add(footer.segment);
+                    }
+                }
+            } catch (IOException e) {
+                // Поврежденный снимок для восстановления не используется
+            }
+        }
+        return segments;
+    }
+
+    // Порядок восстановления: основной файл, временный (сбой между ротацией и
+    // переименованием), затем предыдущие снимки от новых к старым
+    private List<Path> candidates() {
+        List<Path> candidates = new ArrayList<>(retained + 2);
+        candidates.add(path);
+        candidates.add(tempPath());
+        for (int i = 1; i <= retained; i++) {
+            candidates.add(numbered(i));
+        }
+        return candidates;
+    }
+
+    private <T> T readVerified(
+        Path file,
+        long size,
+        Footer footer,
+        BodyReader<T> body,
+        IoStats stats
+    ) throws IOException {
+        if (footer == null) {
+            if (file.equals(tempPath())) {
+                throw new IOException("Temporary snapshot has no footer");
+            }
+            try (
+                Reader reader = new InputStreamReader(
+                    new TimedInputStream(Files.newInputStream(file), stats),
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                return body.read(reader);
+            }
+        }
+        try (
+            ChecksumInputStream checked = new ChecksumInputStream(
+                new TimedInputStream(Files.newInputStream(file), stats),
+                footer.length
+            );
+            Reader reader = new InputStreamReader(
+                checked,
+                StandardCharsets.UTF_8
+            )
+        ) {
+            T result = body.read(reader);
+            checked.skipToEnd();
+            if (checked.count != footer.length) {
+                throw new IOException("Snapshot is truncated");
+            }
+            if (checked.crc.getValue() != footer.crc) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            return result;
+        }
+    }
+
+    private static final class Footer {
+
+        private final long length;
+        private final long crc;
+        private final long segment;
+
+        private Footer(long length, long crc, long segment) {
+            this.length = length;
+            this.crc = crc;
+            this.segment = segment;
+        }
+    }
+
+    private static String footer(long length, long crc, long segment) {
+        return (
+            "\n" +
+            FOOTER_PREFIX +
+            "length=" +
+            length +
+            " crc32c=" +
+            Long.toHexString(crc) +
+            " segment=" +
+            segment +
+            "\n"
+        );
+    }
+
+    // null - футера нет (старый формат); IOException - футер есть, но не сходится с файлом
+    private static Footer readFooter(Path file, long size) throws IOException {
+        int tailSize = (int) Math.min(size, FOOTER_MAX_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate(tailSize);
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.position(size - tailSize);
+            while (tail.hasRemaining() && channel.read(tail) >= 0) {}
+        }
+        String text = new String(
+            tail.array(),
+            0,
+            tail.position(),
+            StandardCharsets.ISO_8859_1
+        );
+        int start = text.lastIndexOf("\n" + FOOTER_PREFIX);
+        if (start < 0) {
+            return null;
+        }
+        String line = text.substring(start).trim();
+        long length = -1;
+        long crc = -1;
+        long segment = NO_SEGMENT;
+        for (String field : line.substring(FOOTER_PREFIX.length()).split(" ")) {
+            try {
+                if (field.startsWith("length=")) {
+                    length = Long.parseLong(field.substring(7));
+                } else if (field.startsWith("crc32c=")) {
+                    crc = Long.parseLong(field.substring(7), 16);
+                } else if (field.startsWith("segment=")) {
+                    segment = Long.parseLong(field.substring(8));
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed snapshot footer");
+            }
+        }
+        long footerLength = tailSize - start;
+        if (length < 0 || crc < 0 || length + footerLength != size) {
+            throw new IOException("Malformed snapshot footer");
+        }
+        return new Footer(length, crc, segment);
+    }
+
+    // Сдвиг предыдущих снимков: <файл> -> .1 -> .2 ...; самый старый удаляется
+    private void rotate() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        if (retained == 0) {
+            return;
+        }
+        Files.deleteIfExists(numbered(retained));
+        for (int i = retained - 1; i >= 1; i--) {
+            if (Files.exists(numbered(i))) {
+                move(numbered(i), numbered(i + 1));
+            }
+        }
+        move(path, numbered(1));
+    }
+
+    private List<Path> quarantined() {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName().toString();
+        List<Path> result = new ArrayList<>();
+        try (
+            DirectoryStream<Path> files = Files.newDirectoryStream(
+                directory,
+                file -> {
+                    String name = file.getFileName().toString();
+                    return (
+                        name.startsWith(prefix) &&
+                        name.contains(CORRUPT_SUFFIX)
+                    );
+                }
+            )
+        ) {
+            files.forEach(result::add);
+        } catch (IOException e) {
+            // Каталог еще не создан
+        }
+        return result;
+    }
+
+    private void quarantine(Path file) {
+        Path target = Paths.get(
+            file + CORRUPT_SUFFIX + System.currentTimeMillis()
+        );
+        try {
+            move(file, target);
+            System.err.println("Damaged snapshot moved to " + target);
+        } catch (IOException e) {
+            System.err.println(
+                "Cannot move damaged snapshot: " + e.getMessage()
+            );
+        }
+    }
+
+    // Замена target уже записанным файлом source: fsync содержимого, атомарное
+    // переименование и fsync каталога. После сбоя на месте target - старый или новый файл
+    static void replace(Path source, Path target) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(
+                source,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            channel.force(true);
+        }
+        move(source, target);
+        syncDirectory(target);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(
+                source,
+                target,
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Переименования становятся постоянными только после fsync каталога;
+    // не на всех платформах каталог можно открыть, тогда шаг пропускается
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Каталог не поддерживает fsync
+        }
+    }
+
+    private Path tempPath() {
+        return Paths.get(path + TEMP_SUFFIX);
+    }
+
+    private Path numbered(int generation) {
+        return Paths.get(path + "." + generation);
+    }
+
+    // Подсчет длины и CRC32C записанного тела
+    private static final class ChecksumOutputStream extends FilterOutputStream {
+
+        private final CRC32C crc = new CRC32C();
+        private long count = 0;
+
+        private ChecksumOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+            throws IOException {
+            out.write(bytes, offset, length);
+            crc.update(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    // Чтение не дальше limit байт с подсчетом CRC32C
+    private static final class ChecksumInputStream extends FilterInputStream {
+
+        private final CRC32C crc = new CRC32C();
+        private final long limit;
+        private long count = 0;
+
+        private ChecksumInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (count >= limit) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                crc.update(b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+            throws IOException {
+            if (count >= limit) {
+                return -1;
+            }
+            int n = in.read(
+                bytes,
+                offset,
+                (int) Math.min(length, limit - count)
+            );
+            if (n > 0) {
+                crc.update(bytes, offset, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(
+                    buffer,
+                    0,
+                    (int) Math.min(buffer.length, n - skipped)
+                );
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        // Дочитывание тела после парсера, чтобы контрольная сумма покрыла его целиком
+        private void skipToEnd() throws IOException {
+            skip(Long.MAX_VALUE);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    // Учет времени и байтов в вызовах нижележащего потока
+    private static final class TimedOutputStream extends FilterOutputStream {
+
+        private final IoStats stats;
+
+        private TimedOutputStream(OutputStream out, IoStats stats) {
+            super(out);
+            this.stats = stats;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            stats.nanos += System.nanoTime() - start;
+            stats.bytes++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+            throws IOException {
+            long start = System.nanoTime();
+            out.write(bytes, offset, length);
+            stats.nanos += System.nanoTime() - start;
+            stats.bytes += length;
+        }
+    }
+
+    private static final class TimedInputStream extends FilterInputStream {
+
+        private final IoStats stats;
+
+        private TimedInputStream(InputStream in, IoStats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            stats.nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                stats.bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+            throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(bytes, offset, length);
+            stats.nanos += System.nanoTime() - start;
+            if (n > 0) {
+                stats.bytes += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.example;
+
+// Исключение для ошибок хранилища: изменение не записано, в памяти оно отменено
+public class StorageException extends RuntimeException {
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Замер одной операции: гистограмма задержек <name> и счетчик ошибок <name>.errors.
+// Метрики берутся из реестра один раз, при создании
+final class TimedOperation {
+
+    private final LatencyHistogram timer;
+    private final LongAdder errors;
+
+    TimedOperation(MetricsRegistry registry, String name) {
+        this.timer = registry.timer(name);
+        this.errors = registry.counter(name + ".errors");
+    }
+
+    <T> T call(Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            errors.increment();
+            throw e;
+        } finally {
+            timer.recordSince(start);
+        }
+    }
+
+    void run(Runnable operation) {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    // Для операций с проверяемыми исключениями: замер ведет вызывающий код
+    long start() {
+        return System.nanoTime();
+    }
+
+    void finish(long start, boolean failed) {
+        if (failed) {
+            errors.increment();
+        }
+        timer.recordSince(start);
+    }
+}
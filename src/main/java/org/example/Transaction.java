@@ -7,7 +7,8 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     private final BigDecimal amount;
-    private final String category;
+    // Номер категории в общем словаре (см. Categories)
+    private final int categoryId;
     private final LocalDateTime dateTime;
     private final TransactionType type;
 
@@ -15,10 +16,20 @@ public class Transaction {
         BigDecimal amount,
         String category,
         TransactionType type
+    ) {
+        this(amount, category, type, LocalDateTime.now());
+    }
+
+    // Восстановление транзакции с исходным временем (при загрузке из хранилища)
+    public Transaction(
+        BigDecimal amount,
+        String category,
+        TransactionType type,
+        LocalDateTime dateTime
     ) {
         this.amount = amount;
-        this.category = category;
-        this.dateTime = LocalDateTime.now();
+        this.categoryId = Categories.id(category);
+        this.dateTime = dateTime;
         this.type = type;
     }
 
@@ -27,7 +38,11 @@ public class Transaction {
     }
 
     public String getCategory() {
-        return category;
+        return Categories.name(categoryId);
+    }
+
+    int getCategoryId() {
+        return categoryId;
     }
 
     public LocalDateTime getDateTime() {
@@ -43,7 +58,7 @@ public class Transaction {
         return String.format(
             "%s - %s: %s %.2f at %s",
             type.getDisplayName(),
-            category,
+            getCategory(),
             amount.compareTo(BigDecimal.ZERO) >= 0 ? "+" : "-",
             amount.abs(),
             dateTime
@@ -0,0 +1,177 @@
+package org.example;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+// Колоночное хранение транзакций кошелька: по примитивному массиву на поле вместо объекта
+// на транзакцию (~21 байт на строку против сотни с лишним).
+//   amounts     - сумма в копейках (Money)
+//   timestamps  - время в микросекундах от эпохи (UTC)
+//   categoryIds - номер категории в общем словаре (см. Categories)
+//   expenseBits - упакованный битсет: бит строки установлен у расходов
+// Строки только добавляются, а массивы при росте копируются, поэтому снимок
+// (ссылки на массивы + размер) остается неизменным и читается без блокировки.
+// Синхронизация - на стороне Wallet
+final class TransactionColumns {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] amounts;
+    private long[] timestamps;
+    private int[] categoryIds;
+    private long[] expenseBits;
+    private int size;
+
+    TransactionColumns() {
+        clear();
+    }
+
+    // Удаление всех строк; ранее снятые снимки не меняются (массивы новые)
+    void clear() {
+        this.amounts = new long[INITIAL_CAPACITY];
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.categoryIds = new int[INITIAL_CAPACITY];
+        this.expenseBits = new long[1];
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Добавление строки; возвращает ее номер
+    int add(
+        long amount,
+        long epochMicros,
+        int categoryId,
+        TransactionType type
+    ) {
+        if (size == amounts.length) {
+            grow();
+        }
+        int row = size;
+        amounts[row] = amount;
+        timestamps[row] = epochMicros;
+        categoryIds[row] = categoryId;
+        if (type == TransactionType.EXPENSE) {
+            expenseBits[row >>> 6] |= 1L << row;
+        }
+        size = row + 1;
+        return row;
+    }
+
+    private void grow() {
+        int capacity = amounts.length + (amounts.length >> 1);
+        amounts = Arrays.copyOf(amounts, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        expenseBits = Arrays.copyOf(expenseBits, (capacity + 63) >>> 6);
+    }
+
+    long amount(int row) {
+        return amounts[row];
+    }
+
+    long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    String category(int row) {
+        return Categories.name(categoryIds[row]);
+    }
+
+    int categoryId(int row) {
+        return categoryIds[row];
+    }
+
+    TransactionType type(int row) {
+        return isExpense(expenseBits, row)
+            ? TransactionType.EXPENSE
+            : TransactionType.INCOME;
+    }
+
+    private static boolean isExpense(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    // Неизменяемое представление текущих строк; объекты Transaction создаются при обращении.
+    // Запись новых строк не затрагивает уже видимые снимку элементы массивов
+    Snapshot snapshot() {
+        return new Snapshot(
+            amounts,
+            timestamps,
+            categoryIds,
+            expenseBits,
+            size
+        );
+    }
+
+    // ArithmeticException для дат за пределами примерно ±290 тысяч лет
+    static long toEpochMicros(LocalDateTime dateTime) {
+        return Math.addExact(
+            Math.multiplyExact(
+                dateTime.toEpochSecond(ZoneOffset.UTC),
+                1_000_000L
+            ),
+            dateTime.getNano() / 1_000
+        );
+    }
+
+    static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(
+            Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+            ZoneOffset.UTC
+        );
+    }
+
+    static final class Snapshot
+        extends AbstractList<Transaction>
+        implements RandomAccess {
+
+        private final long[] amounts;
+        private final long[] timestamps;
+        private final int[] categoryIds;
+        private final long[] expenseBits;
+        private final int size;
+
+        private Snapshot(
+            long[] amounts,
+            long[] timestamps,
+            int[] categoryIds,
+            long[] expenseBits,
+            int size
+        ) {
+            this.amounts = amounts;
+            this.timestamps = timestamps;
+            this.categoryIds = categoryIds;
+            this.expenseBits = expenseBits;
+            this.size = size;
+        }
+
+        @Override
+        public Transaction get(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException(
+                    "Index " + row + " out of bounds for length " + size
+                );
+            }
+            return new Transaction(
+                Money.toBigDecimal(amounts[row]),
+                Categories.name(categoryIds[row]),
+                isExpense(expenseBits, row)
+                    ? TransactionType.EXPENSE
+                    : TransactionType.INCOME,
+                fromEpochMicros(timestamps[row])
+            );
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// Потоковый импорт транзакций из CSV (выписки банка).
+// Формат строки: date,type,category,amount
+//   date     - 2024-01-31 или 2024-01-31T12:30[:00]
+//   type     - INCOME или EXPENSE (регистр не важен)
+//   category - произвольный текст, с запятыми - в двойных кавычках
+//   amount   - положительное число с точкой, не больше двух знаков после нее
+// Первая строка пропускается, если это заголовок. Файл читается пачками по batchSize строк,
+// поэтому память не зависит от размера файла; каждая пачка разбирается (при parallel -
+// параллельно) и целиком передается получателю принятых транзакций
+public class TransactionImporter {
+
+    static final int DEFAULT_BATCH_SIZE = 10_000;
+    // Меньшие пачки разбирать параллельно невыгодно
+    private static final int PARALLEL_THRESHOLD = 1_000;
+
+    private final int batchSize;
+    private final boolean parallel;
+
+    public TransactionImporter() {
+        this(DEFAULT_BATCH_SIZE, false);
+    }
+
+    public TransactionImporter(int batchSize, boolean parallel) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        this.parallel = parallel;
+    }
+
+    // Результат разбора одной строки: транзакция или причина отказа
+    private static class ParsedRow {
+
+        private final Transaction transaction;
+        private final String error;
+
+        private ParsedRow(Transaction transaction, String error) {
+            this.transaction = transaction;
+            this.error = error;
+        }
+    }
+
+    // Чтение всего потока; sink вызывается по одному разу на пачку, в порядке строк файла
+    public ImportResult importCsv(
+        Reader source,
+        Consumer<List<Transaction>> sink
+    ) throws IOException {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = source instanceof BufferedReader
+            ? (BufferedReader) source
+            : new BufferedReader(source, 1 << 16);
+
+        List<String> lines = new ArrayList<>(batchSize);
+        long firstLineNumber = 1;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && isHeader(line)) {
+                firstLineNumber = 2;
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == batchSize) {
+                processBatch(lines, firstLineNumber, sink, result);
+                firstLineNumber = lineNumber + 1;
+                lines.clear();
+            }
+        }
+        if (!lines.isEmpty()) {
+            processBatch(lines, firstLineNumber, sink, result);
+        }
+        return result;
+    }
+
+    private void processBatch(
+        List<String> lines,
+        long firstLineNumber,
+        Consumer<List<Transaction>> sink,
+        ImportResult result
+    ) {
+        IntStream indexes = IntStream.range(0, lines.size());
+        if (parallel && lines.size() >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        // toArray сохраняет порядок строк и при параллельном разборе
+        ParsedRow[] rows = indexes
+            .mapToObj(i -> parseRow(lines.get(i)))
+            .toArray(ParsedRow[]::new);
+
+        List<Transaction> accepted = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] == null) {
+                continue;
+            }
+            if (rows[i].error != null) {
+                result.addRejected(firstLineNumber + i, rows[i].error);
+            } else {
+                accepted.add(rows[i].transaction);
+            }
+        }
+        if (!accepted.isEmpty()) {
+            sink.accept(accepted);
+            result.addImported(accepted.size());
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        List<String> fields = splitCsv(line);
+        return (
+            !fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("date")
+        );
+    }
+
+    // null - пустая строка, которая просто пропускается
+    private static ParsedRow parseRow(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 4) {
+            return rejected("Expected 4 fields, got " + fields.size());
+        }
+
+        LocalDateTime dateTime;
+        try {
+            dateTime = parseDateTime(fields.get(0).trim());
+        } catch (DateTimeParseException e) {
+            return rejected("Invalid date: " + fields.get(0));
+        }
+
+        TransactionType type;
+        try {
+            type = TransactionType.valueOf(
+                fields.get(1).trim().toUpperCase(Locale.ROOT)
+            );
+        } catch (IllegalArgumentException e) {
+            return rejected("Invalid type: " + fields.get(1));
+        }
+
+        if (fields.get(2).isBlank()) {
+            return rejected("Category cannot be empty");
+        }
+        // Категория регистрируется только у принятой строки (в конструкторе Transaction)
+        String category = fields.get(2);
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(fields.get(3).trim());
+        } catch (NumberFormatException e) {
+            return rejected("Invalid amount: " + fields.get(3));
+        }
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return rejected("Amount must be positive");
+        }
+        try {
+            Money.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            return rejected(e.getMessage());
+        }
+
+        return new ParsedRow(
+            new Transaction(amount, category, type, dateTime),
+            null
+        );
+    }
+
+    private static ParsedRow rejected(String reason) {
+        return new ParsedRow(null, reason);
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.indexOf('T') >= 0) {
+            return LocalDateTime.parse(value);
+        }
+        return LocalDate.parse(value).atStartOfDay();
+    }
+
+    // Разбиение строки CSV на поля; поддерживаются поля в кавычках и "" внутри них
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
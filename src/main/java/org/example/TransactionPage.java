@@ -0,0 +1,28 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.List;
+
+// Страница истории транзакций и курсор следующей страницы (null - страница последняя)
+public class TransactionPage {
+
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = Collections.unmodifiableList(transactions);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -6,7 +6,8 @@ import java.util.Objects;
 public class User {
 
     private final String username;
-    private String password;
+    // Хеш пароля (см. PasswordHasher); у старых данных - пароль в открытом виде
+    private volatile String password;
     private final Wallet wallet;
 
     public User(String username, String password) {
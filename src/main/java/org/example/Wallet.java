@@ -1,48 +1,659 @@
 package org.example;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
-// Модель кошелька пользователя
+// Модель кошелька пользователя.
+// Все поля защищены собственной блокировкой кошелька: чтение под read lock, изменения под write lock.
+// Составные операции (проверка + изменение) выполняются вызывающим кодом под getLock().writeLock().
 public class Wallet {
 
-    private BigDecimal balance;
-    private final List<Transaction> transactions;
-    private final Map<String, BigDecimal> budgets;
+    // Баланс и итоги хранятся в копейках (см. Money) и переводятся в BigDecimal в геттерах
+    private long balance;
+    // Транзакции в колоночном виде (см. TransactionColumns)
+    private final TransactionColumns transactions;
+    // Ключи - канонические имена категорий (см. Categories)
+    private final Map<String, Money> budgets;
+
+    // Накопительные итоги, обновляются при каждой транзакции
+    private long totalIncome;
+    private long totalExpenses;
+    private final CategoryTotals incomesByCategory;
+    private final CategoryTotals expensesByCategory;
+
+    // Транзакции и итоги, разложенные по дням: запрос за период берет готовые итоги
+    // полных дней и просматривает транзакции только граничных дней
+    private final NavigableMap<LocalDate, DayBucket> days;
+
+    private final ReentrantReadWriteLock lock;
+
+    // Номера строк транзакций дня и итоги дня по категориям
+    private static class DayBucket {
+
+        private int[] rows = new int[4];
+        private int rowCount = 0;
+        // Строки дня добавлены в порядке времени (импорт может нарушить порядок)
+        private boolean ordered = true;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private final CategoryTotals incomesByCategory = new CategoryTotals();
+        private final CategoryTotals expensesByCategory = new CategoryTotals();
+
+        private void add(
+            int row,
+            long epochMicros,
+            String category,
+            TransactionType type,
+            long amount
+        ) {
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount * 2);
+            }
+            rows[rowCount++] = row;
+            if (epochMicros < lastTimestamp) {
+                ordered = false;
+            } else {
+                lastTimestamp = epochMicros;
+            }
+            if (type == TransactionType.INCOME) {
+                incomesByCategory.add(category, amount);
+            } else {
+                expensesByCategory.add(category, amount);
+            }
+        }
+    }
+
+    // Отложенная загрузка содержимого кошелька из хранилища; вызывается при первом обращении
+    private volatile Consumer<Wallet> loader;
 
     public Wallet() {
-        this.balance = BigDecimal.ZERO;
-        this.transactions = new ArrayList<>();
+        this.balance = 0;
+        this.transactions = new TransactionColumns();
         this.budgets = new HashMap<>();
+        this.totalIncome = 0;
+        this.totalExpenses = 0;
+        this.incomesByCategory = new CategoryTotals();
+        this.expensesByCategory = new CategoryTotals();
+        this.days = new TreeMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    public ReentrantReadWriteLock getLock() {
+        return lock;
+    }
+
+    void setLoader(Consumer<Wallet> loader) {
+        this.loader = loader;
+    }
+
+    // Загружено ли содержимое (у кошельков без хранилища - всегда)
+    boolean isLoaded() {
+        return loader == null;
+    }
+
+    // Вызывается до взятия read lock: загрузка требует write lock
+    void ensureLoaded() {
+        if (loader != null) {
+            lock.writeLock().lock();
+            try {
+                if (loader != null) {
+                    Consumer<Wallet> pending = loader;
+                    loader = null;
+                    pending.accept(this);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Замена содержимого кошелька данными хранилища: откат изменений, которые
+    // хранилище не приняло. Вызывается под write lock или до его взятия
+    void reload(Consumer<Wallet> loader) {
+        lock.writeLock().lock();
+        try {
+            balance = 0;
+            transactions.clear();
+            budgets.clear();
+            totalIncome = 0;
+            totalExpenses = 0;
+            incomesByCategory.clear();
+            expensesByCategory.clear();
+            days.clear();
+            this.loader = null;
+            loader.accept(this);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Откат последней транзакции, которую хранилище не приняло: кошелек
+    // перестраивается из остальных за O(n), поэтому только на пути ошибки
+    void removeLastTransaction() {
+        lock.writeLock().lock();
+        try {
+            List<Transaction> kept = new ArrayList<>(transactions.snapshot());
+            kept.remove(kept.size() - 1);
+            Map<String, Money> savedBudgets = new HashMap<>(budgets);
+            reload(wallet -> {
+                wallet.budgets.putAll(savedBudgets);
+                wallet.addTransactions(kept);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Суммы с большим числом знаков (данные до перехода на Money) округляются до копеек,
+    // время хранится с точностью до микросекунды
+    private static long amountOf(Transaction transaction) {
+        return Money.toMinorUnitsRounded(transaction.getAmount());
     }
 
     public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+        ensureLoaded();
+        long amount = amountOf(transaction);
+        long epochMicros = TransactionColumns.toEpochMicros(
+            transaction.getDateTime()
+        );
+        boolean income = transaction.getType() == TransactionType.INCOME;
+        lock.writeLock().lock();
+        try {
+            // Новые значения считаются до изменения состояния: при переполнении кошелек не меняется
+            long newBalance = income
+                ? Math.addExact(balance, amount)
+                : Math.subtractExact(balance, amount);
+            long newTotal = Math.addExact(
+                income ? totalIncome : totalExpenses,
+                amount
+            );
+            append(transaction, amount, epochMicros);
+            balance = newBalance;
+            if (income) {
+                totalIncome = newTotal;
+            } else {
+                totalExpenses = newTotal;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Проверка, что транзакция поместится в итоги (ArithmeticException, если нет).
+    // Вызывается под write lock перед составной операцией над несколькими кошельками,
+    // чтобы она не оборвалась на середине; итоги по категориям и дням не больше общих
+    void checkCapacity(Transaction transaction) {
+        long amount = amountOf(transaction);
         if (transaction.getType() == TransactionType.INCOME) {
-            balance = balance.add(transaction.getAmount());
+            Math.addExact(balance, amount);
+            Math.addExact(totalIncome, amount);
         } else {
-            balance = balance.subtract(transaction.getAmount());
+            Math.subtractExact(balance, amount);
+            Math.addExact(totalExpenses, amount);
+        }
+    }
+
+    // Запись строки и обновление итогов по категориям и дням; вызывается под write lock
+    private void append(Transaction transaction, long amount, long epochMicros) {
+        String category = transaction.getCategory();
+        TransactionType type = transaction.getType();
+        int row = transactions.add(
+            amount,
+            epochMicros,
+            transaction.getCategoryId(),
+            type
+        );
+        if (type == TransactionType.INCOME) {
+            incomesByCategory.add(category, amount);
+        } else {
+            expensesByCategory.add(category, amount);
+        }
+        days
+            .computeIfAbsent(
+                transaction.getDateTime().toLocalDate(),
+                day -> new DayBucket()
+            )
+            .add(row, epochMicros, category, type, amount);
+    }
+
+    // Добавление пачки транзакций: одна блокировка, итоги пачки считаются заранее,
+    // поэтому переполнение обнаруживается до изменения кошелька
+    public void addTransactions(Collection<Transaction> batch) {
+        ensureLoaded();
+        long[] amounts = new long[batch.size()];
+        long[] timestamps = new long[batch.size()];
+        long batchIncome = 0;
+        long batchExpenses = 0;
+        int i = 0;
+        for (Transaction transaction : batch) {
+            amounts[i] = amountOf(transaction);
+            timestamps[i] = TransactionColumns.toEpochMicros(
+                transaction.getDateTime()
+            );
+            if (transaction.getType() == TransactionType.INCOME) {
+                batchIncome = Math.addExact(batchIncome, amounts[i]);
+            } else {
+                batchExpenses = Math.addExact(batchExpenses, amounts[i]);
+            }
+            i++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            long newBalance = Math.subtractExact(
+                Math.addExact(balance, batchIncome),
+                batchExpenses
+            );
+            long newTotalIncome = Math.addExact(totalIncome, batchIncome);
+            long newTotalExpenses = Math.addExact(totalExpenses, batchExpenses);
+            i = 0;
+            for (Transaction transaction : batch) {
+                append(transaction, amounts[i], timestamps[i]);
+                i++;
+            }
+            balance = newBalance;
+            totalIncome = newTotalIncome;
+            totalExpenses = newTotalExpenses;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void setBudget(String category, BigDecimal amount) {
-        budgets.put(category, amount);
+        ensureLoaded();
+        String key = Categories.normalize(category);
+        lock.writeLock().lock();
+        try {
+            budgets.put(
+                key,
+                Money.ofMinorUnits(Money.toMinorUnitsRounded(amount))
+            );
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public BigDecimal getBudget(String category) {
-        return budgets.getOrDefault(category, BigDecimal.ZERO);
+        ensureLoaded();
+        String key = Categories.lookup(category);
+        lock.readLock().lock();
+        try {
+            return budgets.getOrDefault(key, Money.ZERO).toBigDecimal();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Money getBudgetMoney(String category) {
+        ensureLoaded();
+        String key = Categories.lookup(category);
+        lock.readLock().lock();
+        try {
+            return budgets.getOrDefault(key, Money.ZERO);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    // Getters
+    // Getters; коллекции возвращаются копиями, снятыми под блокировкой
     public BigDecimal getBalance() {
-        return balance;
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.toBigDecimal(balance);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    public Money getBalanceMoney() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.ofMinorUnits(balance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Неизменяемое представление транзакций на момент вызова, без копирования:
+    // объекты Transaction создаются при обращении к элементам
     public List<Transaction> getTransactions() {
-        return Collections.unmodifiableList(transactions);
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return transactions.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTransactionCount() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return transactions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public Map<String, BigDecimal> getBudgets() {
-        return Collections.unmodifiableMap(budgets);
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Map<String, BigDecimal> result = new HashMap<>();
+            budgets.forEach((category, amount) ->
+                result.put(category, amount.toBigDecimal())
+            );
+            return Map.copyOf(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public BigDecimal getTotalIncome() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.toBigDecimal(totalIncome);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Money getTotalIncomeMoney() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.ofMinorUnits(totalIncome);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public BigDecimal getTotalExpenses() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.toBigDecimal(totalExpenses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Money getTotalExpensesMoney() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Money.ofMinorUnits(totalExpenses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Итоги по категориям прибавляются к переданным (сводные отчеты), без BigDecimal
+    void addTotalsTo(CategoryTotals incomes, CategoryTotals expenses) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            incomes.addAll(incomesByCategory);
+            expenses.addAll(expensesByCategory);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, BigDecimal> getIncomesByCategory() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Map.copyOf(incomesByCategory.toBigDecimalMap());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, BigDecimal> getExpensesByCategory() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return Map.copyOf(expensesByCategory.toBigDecimalMap());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public BigDecimal getExpensesInCategory(String category) {
+        ensureLoaded();
+        String key = Categories.lookup(category);
+        lock.readLock().lock();
+        try {
+            return Money.toBigDecimal(expensesByCategory.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Money getExpensesInCategoryMoney(String category) {
+        ensureLoaded();
+        String key = Categories.lookup(category);
+        lock.readLock().lock();
+        try {
+            return Money.ofMinorUnits(expensesByCategory.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Итоги за период [from, to): O(log n + дней в периоде + транзакций граничных дней)
+    public PeriodReport getReport(LocalDateTime from, LocalDateTime to) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            PeriodReport report = new PeriodReport(from, to);
+            if (!from.isBefore(to)) {
+                return report;
+            }
+            for (Map.Entry<LocalDate, DayBucket> entry : days
+                .subMap(from.toLocalDate(), true, to.toLocalDate(), true)
+                .entrySet()) {
+                LocalDate day = entry.getKey();
+                DayBucket bucket = entry.getValue();
+                boolean wholeDay =
+                    !day.atStartOfDay().isBefore(from) &&
+                    !day.plusDays(1).atStartOfDay().isAfter(to);
+                if (wholeDay) {
+                    report.addAll(
+                        bucket.incomesByCategory,
+                        bucket.expensesByCategory
+                    );
+                } else {
+                    long fromMicros = TransactionColumns.toEpochMicros(from);
+                    long toMicros = TransactionColumns.toEpochMicros(to);
+                    for (int i = 0; i < bucket.rowCount; i++) {
+                        int row = bucket.rows[i];
+                        long timestamp = transactions.timestamp(row);
+                        if (timestamp >= fromMicros && timestamp < toMicros) {
+                            report.add(
+                                transactions.type(row),
+                                transactions.category(row),
+                                transactions.amount(row)
+                            );
+                        }
+                    }
+                }
+            }
+            return report;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Страница истории по возрастанию или убыванию (время, номер строки).
+    // Просматриваются только дни от курсора и в пределах периода; дни, в итогах которых нет
+    // нужного типа или категории, пропускаются без просмотра строк. Стоимость -
+    // O(log дней + строк просмотренных дней), не зависит от длины всей истории;
+    // в памяти - только номера строк страницы
+    public TransactionPage getHistory(HistoryQuery query) {
+        ensureLoaded();
+        boolean newestFirst = query.isNewestFirst();
+        HistoryCursor cursor = query.getCursor();
+        LocalDate firstDay = query.getFrom() == null
+            ? null
+            : query.getFrom().toLocalDate();
+        LocalDate lastDay = query.getTo() == null
+            ? null
+            : query.getTo().toLocalDate();
+        if (cursor != null) {
+            LocalDate cursorDay = cursor.getDateTime().toLocalDate();
+            if (newestFirst) {
+                if (lastDay == null || cursorDay.isBefore(lastDay)) {
+                    lastDay = cursorDay;
+                }
+            } else if (firstDay == null || cursorDay.isAfter(firstDay)) {
+                firstDay = cursorDay;
+            }
+        }
+        long fromMicros = boundMicros(query.getFrom(), Long.MIN_VALUE);
+        long toMicros = boundMicros(query.getTo(), Long.MAX_VALUE);
+        long cursorMicros = cursor == null
+            ? 0
+            : boundMicros(cursor.getDateTime(), 0);
+        String category = query.getCategory();
+        int categoryId = category == null ? -1 : Categories.find(category);
+        if (category != null && categoryId < 0) {
+            // Категории нет ни в одной транзакции
+            return new TransactionPage(List.of(), null);
+        }
+        TransactionType type = query.getType();
+        // Лишняя строка показывает, есть ли следующая страница
+        int[] page = new int[query.getLimit() + 1];
+        int count = 0;
+
+        lock.readLock().lock();
+        try {
+            if (
+                firstDay != null && lastDay != null && firstDay.isAfter(lastDay)
+            ) {
+                return new TransactionPage(List.of(), null);
+            }
+            NavigableMap<LocalDate, DayBucket> range = days;
+            if (firstDay != null) {
+                range = range.tailMap(firstDay, true);
+            }
+            if (lastDay != null) {
+                range = range.headMap(lastDay, true);
+            }
+            if (newestFirst) {
+                range = range.descendingMap();
+            }
+            scan:
+            for (DayBucket bucket : range.values()) {
+                if (!mayContain(bucket, type, category)) {
+                    continue;
+                }
+                int[] rows = orderedRows(bucket);
+                for (int i = 0; i < bucket.rowCount; i++) {
+                    int row = rows[newestFirst ? bucket.rowCount - 1 - i : i];
+                    long timestamp = transactions.timestamp(row);
+                    if (
+                        timestamp < fromMicros ||
+                        timestamp >= toMicros ||
+                        (type != null && transactions.type(row) != type) ||
+                        (categoryId >= 0 &&
+                            transactions.categoryId(row) != categoryId)
+                    ) {
+                        continue;
+                    }
+                    if (cursor != null) {
+                        int order = timestamp != cursorMicros
+                            ? Long.compare(timestamp, cursorMicros)
+                            : Long.compare(row, cursor.getPosition());
+                        if (newestFirst ? order >= 0 : order <= 0) {
+                            continue;
+                        }
+                    }
+                    page[count++] = row;
+                    if (count == page.length) {
+                        break scan;
+                    }
+                }
+            }
+
+            int size = Math.min(count, query.getLimit());
+            TransactionColumns.Snapshot snapshot = transactions.snapshot();
+            List<Transaction> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(snapshot.get(page[i]));
+            }
+            String nextCursor = null;
+            if (count > size) {
+                int last = page[size - 1];
+                nextCursor = new HistoryCursor(
+                    TransactionColumns.fromEpochMicros(
+                        transactions.timestamp(last)
+                    ),
+                    last
+                ).encode();
+            }
+            return new TransactionPage(result, nextCursor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Есть ли в дне транзакции нужного типа и категории (null - любые), по итогам дня
+    private static boolean mayContain(
+        DayBucket bucket,
+        TransactionType type,
+        String category
+    ) {
+        boolean incomes =
+            type != TransactionType.EXPENSE &&
+            (category == null
+                ? !bucket.incomesByCategory.isEmpty()
+                : bucket.incomesByCategory.contains(category));
+        boolean expenses =
+            type != TransactionType.INCOME &&
+            (category == null
+                ? !bucket.expensesByCategory.isEmpty()
+                : bucket.expensesByCategory.contains(category));
+        return incomes || expenses;
+    }
+
+    // Строки дня по возрастанию (время, номер строки); вызывается под read lock.
+    // Строки дня, добавленные не по порядку, сортируются в копии: параллельные
+    // читатели не должны видеть изменение массива
+    private int[] orderedRows(DayBucket bucket) {
+        if (bucket.ordered) {
+            return bucket.rows;
+        }
+        Integer[] sorted = new Integer[bucket.rowCount];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = bucket.rows[i];
+        }
+        // Сортировка устойчивая, а строки дня идут по возрастанию номера
+        Arrays.sort(sorted, Comparator.comparingLong(transactions::timestamp));
+        int[] rows = new int[sorted.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = sorted[i];
+        }
+        return rows;
+    }
+
+    // Время в микросекундах; даты вне представимого диапазона - граница диапазона
+    static long boundMicros(LocalDateTime dateTime, long absent) {
+        if (dateTime == null) {
+            return absent;
+        }
+        try {
+            return TransactionColumns.toEpochMicros(dateTime);
+        } catch (ArithmeticException e) {
+            return dateTime.getYear() < 1970 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
     }
 }
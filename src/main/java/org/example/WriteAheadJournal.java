@@ -0,0 +1,230 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Журнал изменений (write-ahead log): каждая запись - одна строка, дописывается в конец файла
+public class WriteAheadJournal implements Closeable {
+
+    private final Path path;
+    // Через сколько записей выполнять fsync (групповая фиксация)
+    private final int syncEvery;
+    private FileChannel channel;
+    private int unsyncedRecords;
+    private int recordCount;
+
+    public WriteAheadJournal(Path path, int syncEvery) throws IOException {
+        if (syncEvery <= 0) {
+            throw new IllegalArgumentException("syncEvery must be positive");
+        }
+        this.path = path;
+        this.syncEvery = syncEvery;
+        this.channel = openChannel(path);
+        this.unsyncedRecords = 0;
+        this.recordCount = 0;
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND
+        );
+    }
+
+    // Чтение всех целых записей журнала. Оборванная последняя строка (сбой во время записи)
+    // отбрасывается и обрезается в файле: иначе следующая запись склеилась бы с ней
+    // и при следующем чтении была бы потеряна
+    public synchronized List<String> readRecords() throws IOException {
+        List<String> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        byte[] content = Files.readAllBytes(path);
+        int start = parse(content, records);
+        if (start < content.length) {
+            System.err.println(
+                "Discarding " +
+                (content.length - start) +
+                " bytes of incomplete record at the end of " +
+                path
+            );
+            channel.truncate(start);
+            channel.force(true);
+        }
+        recordCount = records.size();
+        return records;
+    }
+
+    // Чтение архивного сегмента журнала (см. archiveBefore)
+    public static List<String> readArchive(Path archive) throws IOException {
+        List<String> records = new ArrayList<>();
+        parse(Files.readAllBytes(archive), records);
+        return records;
+    }
+
+    // Разбор целых строк; возвращает позицию за последней целой строкой
+    private static int parse(byte[] content, List<String> records) {
+        int start = 0;
+        for (int end = 0; end < content.length; end++) {
+            if (content[end] != '\n') {
+                continue;
+            }
+            String record = new String(
+                content,
+                start,
+                end - start,
+                StandardCharsets.UTF_8
+            ).trim();
+            if (!record.isEmpty()) {
+                records.add(record);
+            }
+            start = end + 1;
+        }
+        return start;
+    }
+
+    // Добавление записи в конец журнала
+    public synchronized void append(String record) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(record + "\n");
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount++;
+        unsyncedRecords++;
+        if (unsyncedRecords >= syncEvery) {
+            sync();
+        }
+    }
+
+    // Групповая фиксация: записи дописываются одним буфером и сбрасываются одним fsync
+    public synchronized void appendAll(List<String> records)
+        throws IOException {
+        StringBuilder batch = new StringBuilder();
+        for (String record : records) {
+            batch.append(record).append('\n');
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(
+            CharBuffer.wrap(batch)
+        );
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount += records.size();
+        unsyncedRecords += records.size();
+        sync();
+    }
+
+    // Принудительный сброс накопленных записей на диск
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    // Текущий конец журнала: записи до этой позиции попадут в следующий снимок
+    public synchronized long mark() throws IOException {
+        return channel.size();
+    }
+
+    // Удаление записей до позиции mark после того, как они попали в снимок.
+    // Записи, добавленные во время создания снимка, переносятся в новый файл журнала
+    public synchronized void discardBefore(long mark) throws IOException {
+        long size = channel.size();
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - mark));
+        try (
+            FileChannel reader = FileChannel.open(
+                path,
+                StandardOpenOption.READ
+            )
+        ) {
+            while (tail.hasRemaining()) {
+                if (reader.read(tail, mark + tail.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        tail.flip();
+
+        int remainingRecords = 0;
+        for (int i = tail.position(); i < tail.limit(); i++) {
+            if (tail.get(i) == '\n') {
+                remainingRecords++;
+            }
+        }
+
+        Path tempPath = Paths.get(path + ".tmp");
+        try (
+            FileChannel writer = FileChannel.open(
+                tempPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+        ) {
+            while (tail.hasRemaining()) {
+                writer.write(tail);
+            }
+            writer.force(true);
+        }
+        channel.close();
+        Files.move(
+            tempPath,
+            path,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        channel = openChannel(path);
+        unsyncedRecords = 0;
+        recordCount = remainingRecords;
+    }
+
+    // То же, что discardBefore, но записи до mark сначала сохраняются в отдельный файл
+    // archive: по нему от предыдущего снимка можно дойти до текущего состояния
+    public synchronized void archiveBefore(long mark, Path archive)
+        throws IOException {
+        Path tempPath = Paths.get(archive + ".tmp");
+        try (
+            FileChannel writer = FileChannel.open(
+                tempPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            );
+            FileChannel reader = FileChannel.open(
+                path,
+                StandardOpenOption.READ
+            )
+        ) {
+            long copied = 0;
+            while (copied < mark) {
+                copied += reader.transferTo(copied, mark - copied, writer);
+            }
+        }
+        SnapshotFiles.replace(tempPath, archive);
+        discardBefore(mark);
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+}
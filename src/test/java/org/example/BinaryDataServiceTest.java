@@ -0,0 +1,137 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryDataServiceTest {
+
+    @TempDir
+    Path directory;
+
+    // Файл, который не удалось открыть, не перезаписывается
+    @Test
+    void refusesToOpenDamagedFileAndKeepsIt() throws IOException {
+        Path path = directory.resolve("users.bin");
+        BinaryDataService dataService = new BinaryDataService(path);
+        dataService.addUser(new User("alice", "hash"));
+        dataService.addUser(new User("bob", "hash"));
+        dataService.close();
+        byte[] content = Files.readAllBytes(path);
+        // Неизвестная версия формата сразу за magic
+        content[4] = 0x7F;
+        Files.write(path, content);
+
+        assertThrows(
+            UncheckedIOException.class,
+            () -> new BinaryDataService(path)
+        );
+        assertArrayEquals(content, Files.readAllBytes(path));
+    }
+
+    // Страницы, прочитанные из файла без загрузки кошелька, совпадают
+    // со страницами загруженного кошелька, включая курсоры
+    @Test
+    void historyFromFileMatchesWallet() {
+        Path path = directory.resolve("users.bin");
+        BinaryDataService dataService = new BinaryDataService(path);
+        User user = new User("alice", "hash");
+        dataService.addUser(user);
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Каждая пятая - в одно и то же время: порядок решает номер строки
+            LocalDateTime dateTime = i % 5 == 0
+                ? start.plusHours(12)
+                : start.plusMinutes(random.nextInt(60 * 24 * 30));
+            batch.add(
+                new Transaction(
+                    new BigDecimal(1 + random.nextInt(1000)),
+                    random.nextBoolean() ? "Food" : "Rent",
+                    random.nextBoolean()
+                        ? TransactionType.INCOME
+                        : TransactionType.EXPENSE,
+                    dateTime
+                )
+            );
+        }
+        user.getWallet().addTransactions(batch);
+        dataService.appendTransactions("alice", batch);
+        dataService.close();
+
+        BinaryDataService cold = new BinaryDataService(path);
+        BinaryDataService warm = new BinaryDataService(path);
+        try {
+            Wallet wallet = warm.getUser("alice").getWallet();
+            for (boolean newestFirst : new boolean[] { true, false }) {
+                String coldCursor = null;
+                String warmCursor = null;
+                int pages = 0;
+                do {
+                    TransactionPage fromFile = cold.queryHistory(
+                        "alice",
+                        query(newestFirst).after(coldCursor)
+                    );
+                    assertNotNull(fromFile);
+                    TransactionPage fromWallet = wallet.getHistory(
+                        query(newestFirst).after(warmCursor)
+                    );
+                    assertEquals(
+                        describe(fromWallet),
+                        describe(fromFile)
+                    );
+                    coldCursor = fromFile.getNextCursor();
+                    warmCursor = fromWallet.getNextCursor();
+                    pages++;
+                } while (coldCursor != null);
+                assertNull(warmCursor);
+                assertTrue(pages > 1);
+            }
+            assertFalse(cold.getUser("alice").getWallet().isLoaded());
+        } finally {
+            cold.close();
+            warm.close();
+        }
+    }
+
+    private static HistoryQuery query(boolean newestFirst) {
+        return new HistoryQuery(7, newestFirst)
+            .type(TransactionType.EXPENSE)
+            .from(LocalDateTime.of(2026, 1, 3, 0, 0))
+            .to(LocalDateTime.of(2026, 1, 25, 0, 0));
+    }
+
+    private static List<String> describe(TransactionPage page) {
+        List<String> rows = new ArrayList<>();
+        for (Transaction transaction : page.getTransactions()) {
+            rows.add(
+                transaction.getDateTime() +
+                " " +
+                transaction.getType() +
+                " " +
+                transaction.getCategory() +
+                " " +
+                transaction.getAmount()
+            );
+        }
+        rows.add(String.valueOf(page.getNextCursor()));
+        return rows;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileDataServiceRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    // Синхронная запись журнала и без автоматического сворачивания в снимок
+    private FileDataService open() {
+        return new FileDataService(
+            directory.resolve("users.json"),
+            64,
+            1_000_000,
+            false,
+            Duration.ZERO
+        );
+    }
+
+    private static void record(
+        FileDataService dataService,
+        User user,
+        String amount,
+        TransactionType type
+    ) {
+        Transaction transaction = new Transaction(
+            new BigDecimal(amount),
+            "Food",
+            type
+        );
+        user.getWallet().addTransaction(transaction);
+        dataService.appendTransaction(user.getUsername(), transaction);
+    }
+
+    @Test
+    void journalIsReplayedAfterRestart() {
+        FileDataService dataService = open();
+        User user = new User("alice", "hash");
+        dataService.addUser(user);
+        record(dataService, user, "100", TransactionType.INCOME);
+        record(dataService, user, "30", TransactionType.EXPENSE);
+        dataService.close();
+
+        FileDataService reopened = open();
+        try {
+            Wallet wallet = reopened.getUser("alice").getWallet();
+            assertEquals(new BigDecimal("70.00"), wallet.getBalance());
+            assertEquals(2, wallet.getTransactionCount());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void tornJournalTailIsIgnored() throws IOException {
+        FileDataService dataService = open();
+        User user = new User("alice", "hash");
+        dataService.addUser(user);
+        record(dataService, user, "100", TransactionType.INCOME);
+        dataService.close();
+        Files.write(
+            directory.resolve("users.json.journal"),
+            "{\"op\":\"TRANSACTION\",\"user".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND
+        );
+
+        FileDataService reopened = open();
+        User restored = reopened.getUser("alice");
+        assertEquals(1, restored.getWallet().getTransactionCount());
+        record(reopened, restored, "5", TransactionType.EXPENSE);
+        reopened.close();
+
+        FileDataService again = open();
+        try {
+            Wallet wallet = again.getUser("alice").getWallet();
+            assertEquals(2, wallet.getTransactionCount());
+            assertEquals(new BigDecimal("95.00"), wallet.getBalance());
+        } finally {
+            again.close();
+        }
+    }
+
+    // Поврежденный последний снимок откладывается, данные собираются из предыдущего
+    // снимка и сегментов журнала после него
+    @Test
+    void damagedSnapshotFallsBackToPreviousOne() throws IOException {
+        FileDataService dataService = open();
+        User user = new User("alice", "hash");
+        dataService.addUser(user);
+        record(dataService, user, "100", TransactionType.INCOME);
+        dataService.compact();
+        record(dataService, user, "10", TransactionType.EXPENSE);
+        dataService.compact();
+        record(dataService, user, "20", TransactionType.EXPENSE);
+        dataService.close();
+        damage(directory.resolve("users.json"));
+
+        FileDataService reopened = open();
+        try {
+            Wallet wallet = reopened.getUser("alice").getWallet();
+            assertEquals(3, wallet.getTransactionCount());
+            assertEquals(new BigDecimal("70.00"), wallet.getBalance());
+        } finally {
+            reopened.close();
+        }
+        assertEquals(1, quarantined().size());
+    }
+
+    @Test
+    void refusesToStartWithoutIntactSnapshot() throws IOException {
+        FileDataService dataService = open();
+        dataService.addUser(new User("alice", "hash"));
+        dataService.compact();
+        dataService.close();
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshots = files
+                .filter(file ->
+                    file
+                        .getFileName()
+                        .toString()
+                        .matches("users\\.json(\\.\\d+)?")
+                )
+                .toList();
+        }
+        assertTrue(snapshots.size() > 1);
+        for (Path snapshot : snapshots) {
+            damage(snapshot);
+        }
+
+        assertThrows(IllegalStateException.class, this::open);
+        // Поврежденные файлы не удаляются
+        assertEquals(snapshots.size(), quarantined().size());
+    }
+
+    // Первый байт тела снимка: контрольная сумма в подписи перестает сходиться
+    private static void damage(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        content[0] ^= 0x20;
+        Files.write(file, content);
+    }
+
+    private List<Path> quarantined() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file ->
+                    file.getFileName().toString().contains(".corrupt-")
+                )
+                .toList();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JdbcDataServiceTest {
+
+    // Каждый тест - своя база в памяти, живущая до конца JVM
+    private static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static void execute(String url, String... statements)
+        throws SQLException {
+        try (
+            Connection connection = DriverManager.getConnection(url);
+            Statement statement = connection.createStatement()
+        ) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    // Разные запуски сохранили одну категорию в разных написаниях
+    @Test
+    void categoryTotalsMergeSpellings() throws SQLException {
+        String url = url("spellings");
+        JdbcDataService dataService = new JdbcDataService(url);
+        dataService.addUser(new User("alice", "hash"));
+        execute(
+            url,
+            "INSERT INTO transactions" +
+            " (username, type, category, category_key, amount, occurred_at)" +
+            " VALUES" +
+            " ('alice', 1, 'food', 'food', 1000," +
+            "  TIMESTAMP '2026-01-05 10:00:00')," +
+            " ('alice', 1, 'Food', 'food', 2000," +
+            "  TIMESTAMP '2026-01-06 10:00:00')"
+        );
+        try {
+            assertSingleFoodTotal(dataService);
+            TransactionPage page = dataService.queryHistory(
+                "alice",
+                new HistoryQuery(10, true).category("FOOD")
+            );
+            assertEquals(2, page.getTransactions().size());
+            PeriodReport report = dataService.queryReport(
+                "alice",
+                LocalDateTime.of(2026, 1, 1, 0, 0),
+                LocalDateTime.of(2026, 2, 1, 0, 0)
+            );
+            assertEquals(1, report.getExpensesByCategory().size());
+            assertEquals(
+                0,
+                new BigDecimal("30.00").compareTo(report.getTotalExpenses())
+            );
+        } finally {
+            dataService.close();
+        }
+    }
+
+    // База, созданная до появления category_key, дополняется ключом при открытии
+    @Test
+    void existingDatabaseGetsCategoryKey() throws SQLException {
+        String url = url("legacy");
+        execute(
+            url,
+            "CREATE TABLE users (username VARCHAR(255) PRIMARY KEY," +
+            " password VARCHAR(255) NOT NULL)",
+            "CREATE TABLE transactions (id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+            " username VARCHAR(255) NOT NULL" +
+            "  REFERENCES users (username) ON DELETE CASCADE," +
+            " type TINYINT NOT NULL, category VARCHAR(255) NOT NULL," +
+            " amount BIGINT NOT NULL, occurred_at TIMESTAMP(9) NOT NULL)",
+            "CREATE INDEX transactions_user_category_time" +
+            " ON transactions (username, category, occurred_at)",
+            "INSERT INTO users VALUES ('alice', 'hash')",
+            "INSERT INTO transactions" +
+            " (username, type, category, amount, occurred_at)" +
+            " VALUES" +
+            " ('alice', 1, 'food', 1000, TIMESTAMP '2026-01-05 10:00:00')," +
+            " ('alice', 1, 'Food', 2000, TIMESTAMP '2026-01-06 10:00:00')"
+        );
+        JdbcDataService dataService = new JdbcDataService(url);
+        try {
+            assertSingleFoodTotal(dataService);
+        } finally {
+            dataService.close();
+        }
+    }
+
+    private static void assertSingleFoodTotal(JdbcDataService dataService) {
+        Map<String, BigDecimal> totals = dataService.queryCategoryTotals(
+            "alice",
+            TransactionType.EXPENSE
+        );
+        assertEquals(1, totals.size());
+        Map.Entry<String, BigDecimal> total = totals
+            .entrySet()
+            .iterator()
+            .next();
+        assertTrue(total.getKey().equalsIgnoreCase("food"));
+        assertEquals(0, new BigDecimal("30.00").compareTo(total.getValue()));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ShardedFileDataServiceTest {
+
+    private static final int SHARD_COUNT = 4;
+
+    @TempDir
+    Path directory;
+
+    // Сбой после сброса журнала только одного сегмента (или обоих): при загрузке
+    // перевод восстанавливается из общего журнала целиком и не применяется дважды
+    @ParameterizedTest
+    @ValueSource(strings = { "sender", "recipient", "both" })
+    void crossShardTransferSurvivesCrash(String flushed) {
+        String sender = "alice";
+        String recipient = recipientInAnotherShard(sender);
+        // Сегменты сбрасываются только явно; общий журнал переводов - синхронно
+        Map<Path, FileDataService> shards = new ConcurrentHashMap<>();
+        ShardedFileDataService dataService = new ShardedFileDataService(
+            directory,
+            SHARD_COUNT,
+            path -> {
+                FileDataService shard = new FileDataService(
+                    path,
+                    1_000_000,
+                    1_000_000,
+                    false,
+                    Duration.ofHours(1)
+                );
+                shards.put(path, shard);
+                return shard;
+            },
+            Duration.ZERO
+        );
+        User from = new User(sender, "hash");
+        User to = new User(recipient, "hash");
+        dataService.addUser(from);
+        dataService.addUser(to);
+        Transaction income = new Transaction(
+            new BigDecimal("10"),
+            "Salary",
+            TransactionType.INCOME
+        );
+        from.getWallet().addTransaction(income);
+        dataService.appendTransaction(sender, income);
+        dataService.flush();
+
+        Transaction debit = new Transaction(
+            new BigDecimal("3"),
+            "Gift",
+            TransactionType.EXPENSE
+        );
+        Transaction credit = new Transaction(
+            new BigDecimal("3"),
+            "Gift",
+            TransactionType.INCOME
+        );
+        from.getWallet().addTransaction(debit);
+        to.getWallet().addTransaction(credit);
+        dataService.appendTransfer(sender, debit, recipient, credit);
+        if (!flushed.equals("recipient")) {
+            shards.get(shardPath(sender)).flush();
+        }
+        if (!flushed.equals("sender")) {
+            shards.get(shardPath(recipient)).flush();
+        }
+
+        // Первый экземпляр не закрывается: его несброшенные очереди потеряны
+        ShardedFileDataService reopened = new ShardedFileDataService(
+            directory,
+            SHARD_COUNT
+        );
+        try {
+            Wallet senderWallet = reopened.getUser(sender).getWallet();
+            Wallet recipientWallet = reopened.getUser(recipient).getWallet();
+            assertEquals(new BigDecimal("7.00"), senderWallet.getBalance());
+            assertEquals(2, senderWallet.getTransactionCount());
+            assertEquals(new BigDecimal("3.00"), recipientWallet.getBalance());
+            assertEquals(1, recipientWallet.getTransactionCount());
+        } finally {
+            reopened.close();
+            dataService.close();
+        }
+    }
+
+    private static String recipientInAnotherShard(String sender) {
+        for (int i = 0; ; i++) {
+            String candidate = "bob" + i;
+            if (shardOf(candidate) != shardOf(sender)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static int shardOf(String username) {
+        return Math.floorMod(username.hashCode(), SHARD_COUNT);
+    }
+
+    private Path shardPath(String username) {
+        return directory.resolve(
+            String.format("users-%03d.json", shardOf(username))
+        );
+    }
+}
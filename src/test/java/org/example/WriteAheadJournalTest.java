@@ -0,0 +1,72 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteAheadJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReadBackAfterReopen() throws IOException {
+        Path path = directory.resolve("test.journal");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            journal.append("a");
+            journal.append("b");
+            journal.appendAll(List.of("c", "d"));
+        }
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            assertEquals(List.of("a", "b", "c", "d"), journal.readRecords());
+            assertEquals(4, journal.getRecordCount());
+        }
+    }
+
+    // Оборванная запись отбрасывается и обрезается: следующая не склеивается с ней
+    @Test
+    void tornTailIsDiscardedAndTruncated() throws IOException {
+        Path path = directory.resolve("test.journal");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            journal.append("a");
+            journal.append("b");
+        }
+        long intactSize = Files.size(path);
+        Files.write(
+            path,
+            "{\"op\":\"TRANS".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND
+        );
+
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            assertEquals(List.of("a", "b"), journal.readRecords());
+            assertEquals(intactSize, Files.size(path));
+            journal.append("c");
+        }
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            assertEquals(List.of("a", "b", "c"), journal.readRecords());
+        }
+    }
+
+    @Test
+    void discardBeforeKeepsLaterRecords() throws IOException {
+        Path path = directory.resolve("test.journal");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            journal.append("a");
+            long mark = journal.mark();
+            journal.append("b");
+            journal.discardBefore(mark);
+            assertEquals(1, journal.getRecordCount());
+        }
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 1)) {
+            assertEquals(List.of("b"), journal.readRecords());
+        }
+    }
+}